@@ -0,0 +1,174 @@
+package de.hsos.habiton.database;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prüft die Datenbank-Migrationen mit Altdaten. Die Ausgangsdatenbank wird aus dem exportierten Schema
+ * der jeweiligen Version angelegt, das Ergebnis gegen das exportierte Schema der Zielversion validiert.
+ * @author Finn Garrels
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public final MigrationTestHelper helper =
+            new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(), HabitDatabase.class);
+
+    private static void insertHabit(SupportSQLiteDatabase db, int id, String name, int streak) {
+        db.execSQL("INSERT INTO habit_table (id, name, description, streak, longestStreak, icon) " +
+                "VALUES (?, ?, '', ?, ?, 'ic_book')", new Object[]{id, name, streak, streak});
+    }
+
+    private static void insertTracking(SupportSQLiteDatabase db, int habitId, Object date, boolean status) {
+        db.execSQL("INSERT INTO habit_tracking_table (habitID, date, status) VALUES (?, ?, ?)",
+                new Object[]{habitId, date, status ? 1 : 0});
+    }
+
+    @Test
+    public void migrate13To14_mergesDuplicateTrackings() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 13);
+        insertHabit(db, 1, "Read", 0);
+        insertHabit(db, 2, "Run", 0);
+        insertTracking(db, 1, "2024-01-01", false);
+        insertTracking(db, 1, "2024-01-01", true);
+        insertTracking(db, 1, "2024-01-02", false);
+        insertTracking(db, 1, "2024-01-02", false);
+        insertTracking(db, 2, "2024-01-01", true);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 14, true, HabitDatabase.MIGRATION_13_14);
+
+        try (Cursor cursor = db.query("SELECT habitID, date, status FROM habit_tracking_table " +
+                "ORDER BY habitID, date")) {
+            assertEquals(3, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("2024-01-01", cursor.getString(1));
+            assertEquals(1, cursor.getInt(2));
+            cursor.moveToNext();
+            assertEquals("2024-01-02", cursor.getString(1));
+            assertEquals(0, cursor.getInt(2));
+            cursor.moveToNext();
+            assertEquals(2, cursor.getInt(0));
+            assertEquals(1, cursor.getInt(2));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate14To15_storesDatesAsEpochDays() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 14);
+        insertHabit(db, 1, "Read", 0);
+        insertTracking(db, 1, "2024-01-01", true);
+        insertTracking(db, 1, "1969-12-31", false);
+        insertTracking(db, 1, "not a date", true);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 15, true, HabitDatabase.MIGRATION_14_15);
+
+        try (Cursor cursor = db.query("SELECT date, status FROM habit_tracking_table ORDER BY date")) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(-1, cursor.getLong(0));
+            assertEquals(0, cursor.getInt(1));
+            cursor.moveToNext();
+            assertEquals(LocalDate.of(2024, 1, 1).toEpochDay(), cursor.getLong(0));
+            assertEquals(1, cursor.getInt(1));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate15To16_addsEmptyStreakStarts() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 15);
+        insertHabit(db, 1, "Read", 4);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 16, true, HabitDatabase.MIGRATION_15_16);
+
+        try (Cursor cursor = db.query("SELECT streak, longestStreak, streakStart, bestStreakStart FROM habit_table")) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(4, cursor.getInt(0));
+            assertEquals(4, cursor.getInt(1));
+            assertTrue(cursor.isNull(2));
+            assertTrue(cursor.isNull(3));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate16To17_renamesDuplicateNames() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 16);
+        insertHabit(db, 1, "Read", 0);
+        insertHabit(db, 2, "Read", 0);
+        insertHabit(db, 3, "Run", 0);
+        insertHabit(db, 4, "Read", 0);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 17, true, HabitDatabase.MIGRATION_16_17);
+
+        try (Cursor cursor = db.query("SELECT name FROM habit_table ORDER BY id")) {
+            assertEquals(4, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Read", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("Read (2)", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("Run", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("Read (4)", cursor.getString(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate13To17_keepsHistoryOfOldInstallations() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 13);
+        insertHabit(db, 1, "Read", 3);
+        insertHabit(db, 2, "Read", 0);
+        insertTracking(db, 1, "2024-01-01", false);
+        insertTracking(db, 1, "2024-01-01", true);
+        insertTracking(db, 1, "2024-01-02", true);
+        insertTracking(db, 2, "not a date", true);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 17, true, HabitDatabase.MIGRATION_13_14,
+                HabitDatabase.MIGRATION_14_15, HabitDatabase.MIGRATION_15_16, HabitDatabase.MIGRATION_16_17);
+
+        try (Cursor cursor = db.query("SELECT habitID, date, status FROM habit_tracking_table ORDER BY date")) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(LocalDate.of(2024, 1, 1).toEpochDay(), cursor.getLong(1));
+            assertEquals(1, cursor.getInt(2));
+            cursor.moveToNext();
+            assertEquals(LocalDate.of(2024, 1, 2).toEpochDay(), cursor.getLong(1));
+        }
+        try (Cursor cursor = db.query("SELECT name, streak, streakStart FROM habit_table ORDER BY id")) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Read", cursor.getString(0));
+            assertEquals(3, cursor.getInt(1));
+            assertTrue(cursor.isNull(2));
+            cursor.moveToNext();
+            assertEquals("Read (2)", cursor.getString(0));
+        }
+        db.close();
+    }
+}
@@ -1,39 +1,79 @@
 package de.hsos.habiton.adapters;
 
-import android.annotation.SuppressLint;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.databinding.DataBindingUtil;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import de.hsos.habiton.R;
 import de.hsos.habiton.database.models.Habit;
-import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.database.models.HabitStats;
+import de.hsos.habiton.database.models.HabitWithStatus;
 import de.hsos.habiton.databinding.HabitItemBinding;
 import de.hsos.habiton.databinding.AnalyticsHabitItemBinding;
 
 /**
- * Adapter für die RecyclerView, um Gewohnheiten anzuzeigen.
+ * Adapter für die RecyclerView, um Gewohnheiten mit ihrem heutigen Status anzuzeigen.
+ * Änderungen an der Liste werden mit DiffUtil im Hintergrund berechnet, sodass nur geänderte Einträge neu gebunden werden.
  * @author Finn Garrels
  */
-public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
-    private List<Habit> habits = new ArrayList<>();
-    private List<HabitTracking> trackings = new ArrayList<>();
+public class HabitAdapter extends ListAdapter<HabitWithStatus, RecyclerView.ViewHolder> {
     private final int viewType;
+    private SparseArray<HabitStats> stats = new SparseArray<>();
+    private OnHabitClickListener onHabitClickListener;
     public static final int VIEW_TYPE_NORMAL = 0;
     public static final int VIEW_TYPE_ANALYTICS = 1;
 
+    /**
+     * Listener für das Antippen einer Gewohnheit.
+     */
+    public interface OnHabitClickListener {
+        /**
+         * Wird aufgerufen, wenn eine Gewohnheit angetippt wurde.
+         *
+         * @param habit Die angetippte Gewohnheit.
+         */
+        void onHabitClick(Habit habit);
+    }
+
+    /**
+     * Vergleicht Gewohnheiten anhand ihrer ID und ihrer angezeigten Inhalte inklusive Tagesstatus.
+     */
+    private static final DiffUtil.ItemCallback<HabitWithStatus> DIFF_CALLBACK = new DiffUtil.ItemCallback<HabitWithStatus>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HabitWithStatus oldItem, @NonNull HabitWithStatus newItem) {
+            return oldItem.getHabit().getId() == newItem.getHabit().getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HabitWithStatus oldItem, @NonNull HabitWithStatus newItem) {
+            Habit oldHabit = oldItem.getHabit();
+            Habit newHabit = newItem.getHabit();
+            return oldItem.isStatus() == newItem.isStatus()
+                    && Objects.equals(oldHabit.getName(), newHabit.getName())
+                    && Objects.equals(oldHabit.getDescription(), newHabit.getDescription())
+                    && Objects.equals(oldHabit.getIcon(), newHabit.getIcon())
+                    && oldHabit.getStreak() == newHabit.getStreak()
+                    && oldHabit.getLongestStreak() == newHabit.getLongestStreak();
+        }
+    };
+
     /**
      * Konstruktor für den HabitAdapter.
      *
      * @param viewType Der Typ der Ansicht, entweder normal oder Analyse.
      */
     public HabitAdapter(int viewType) {
+        super(DIFF_CALLBACK);
         this.viewType = viewType;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -43,7 +83,14 @@ public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         if (viewType == VIEW_TYPE_ANALYTICS) {
             AnalyticsHabitItemBinding binding = DataBindingUtil.inflate(
                     inflater, R.layout.analytics_habit_item, parent, false);
-            return new AnalyticsHabitHolder(binding);
+            AnalyticsHabitHolder holder = new AnalyticsHabitHolder(binding);
+            holder.itemView.setOnClickListener(v -> {
+                Habit habit = getHabitAt(holder.getBindingAdapterPosition());
+                if (habit != null && onHabitClickListener != null) {
+                    onHabitClickListener.onHabitClick(habit);
+                }
+            });
+            return holder;
         } else {
             HabitItemBinding binding = DataBindingUtil.inflate(
                     inflater, R.layout.habit_item, parent, false);
@@ -59,62 +106,52 @@ public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
      */
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        Habit habit = habits.get(position);
-        HabitTracking tracking = findTrackingForHabit(habit.getId());
+        HabitWithStatus item = getItem(position);
 
         if (getItemViewType(position) == VIEW_TYPE_ANALYTICS) {
-            ((AnalyticsHabitHolder) holder).bind(habit, tracking);
+            ((AnalyticsHabitHolder) holder).bind(item.getHabit(), item.isStatus(), stats.get(item.getHabit().getId()));
         } else {
-            ((HabitHolder) holder).bind(habit, tracking);
+            ((HabitHolder) holder).bind(item.getHabit(), item.isStatus());
         }
     }
 
     /**
-     * Sucht nach Tracking-Daten für eine gegebene Gewohnheit.
+     * Gibt die stabile ID des Elements zurück, die der ID der Gewohnheit entspricht.
      *
-     * @param habitId Die ID der Gewohnheit, für die Tracking-Daten gesucht werden.
-     * @return Die Tracking-Daten für die gegebene Gewohnheit oder null, wenn keine gefunden wurden.
+     * @param position Die Position des Elements in der Datenquelle.
+     * @return Die ID der Gewohnheit.
      */
-    private HabitTracking findTrackingForHabit(int habitId) {
-        for (HabitTracking tracking : trackings) {
-            if (tracking.getHabitID() == habitId) {
-                return tracking;
-            }
-        }
-        return null;
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getHabit().getId();
     }
 
     /**
-     * Gibt die Anzahl der Elemente in der Datenquelle zurück.
+     * Setzt die Liste der Gewohnheiten. Die Unterschiede zur bisherigen Liste werden im Hintergrund berechnet.
      *
-     * @return Die Anzahl der Elemente in der Datenquelle.
+     * @param habits Die Liste der Gewohnheiten mit Tagesstatus, die angezeigt werden sollen.
      */
-    @Override
-    public int getItemCount() {
-        return habits.size();
+    public void setHabits(List<HabitWithStatus> habits) {
+        submitList(habits);
     }
 
-
     /**
-     * Setzt die Liste der Gewohnheiten und aktualisiert die RecyclerView.
+     * Setzt die Kennzahlen aller Gewohnheiten für die Analyseansicht und aktualisiert die Liste einmalig.
      *
-     * @param habits Die Liste der Gewohnheiten, die angezeigt werden sollen.
+     * @param stats Die Kennzahlen nach Gewohnheits-ID.
      */
-    @SuppressLint("NotifyDataSetChanged")
-    public void setHabits(List<Habit> habits) {
-        this.habits = habits;
-        notifyDataSetChanged();
+    public void setStats(SparseArray<HabitStats> stats) {
+        this.stats = stats;
+        notifyItemRangeChanged(0, getItemCount());
     }
 
     /**
-     * Setzt die Liste der Gewohnheitstrackings und aktualisiert die RecyclerView.
+     * Setzt den Listener, der beim Antippen einer Gewohnheit benachrichtigt wird.
      *
-     * @param trackings Die Liste der Gewohnheitstrackings.
+     * @param onHabitClickListener Der Listener oder null, um ihn zu entfernen.
      */
-    @SuppressLint("NotifyDataSetChanged")
-    public void setHabitTrackings(List<HabitTracking> trackings) {
-        this.trackings = trackings;
-        notifyDataSetChanged();
+    public void setOnHabitClickListener(OnHabitClickListener onHabitClickListener) {
+        this.onHabitClickListener = onHabitClickListener;
     }
 
     /**
@@ -136,8 +173,8 @@ public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
      * @return Die Gewohnheit an der angegebenen Position oder null, wenn nicht vorhanden.
      */
     public Habit getHabitAt(int adapterPosition) {
-        if (adapterPosition >= 0 && adapterPosition < habits.size()) {
-            return habits.get(adapterPosition);
+        if (adapterPosition >= 0 && adapterPosition < getItemCount()) {
+            return getItem(adapterPosition).getHabit();
         }
         return null;
     }
@@ -161,12 +198,12 @@ public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         /**
          * Bindet die Daten an die ViewHolder für normale Gewohnheiten.
          *
-         * @param habit    Die Gewohnheit, die angezeigt werden soll.
-         * @param tracking Die zugehörige Tracking-Information der Gewohnheit.
+         * @param habit Die Gewohnheit, die angezeigt werden soll.
+         * @param done  Der heutige Status der Gewohnheit.
          */
-        public void bind(Habit habit, HabitTracking tracking) {
+        public void bind(Habit habit, boolean done) {
             binding.setHabit(habit);
-            binding.setTracking(tracking);
+            binding.setDone(done);
             binding.executePendingBindings();
         }
     }
@@ -190,13 +227,14 @@ public class HabitAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         /**
          * Bindet die Daten an die ViewHolder für Gewohnheiten mit Analyseinformationen.
          *
-         * @param habit    Die Gewohnheit, die angezeigt werden soll.
-         * @param tracking Die zugehörige Tracking-Information der Gewohnheit.
+         * @param habit Die Gewohnheit, die angezeigt werden soll.
+         * @param done  Der heutige Status der Gewohnheit.
+         * @param stats Die Kennzahlen der Gewohnheit oder null, solange sie noch nicht berechnet wurden.
          */
-        public void bind(Habit habit, HabitTracking tracking) {
+        public void bind(Habit habit, boolean done, HabitStats stats) {
             binding.setHabit(habit);
-            binding.setTracking(tracking);
-            binding.longestStreakNumber.setText(String.valueOf(habit.getLongestStreak()));
+            binding.setDone(done);
+            binding.setStats(stats);
             binding.executePendingBindings();
         }
     }
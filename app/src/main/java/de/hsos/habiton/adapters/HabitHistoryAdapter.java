@@ -0,0 +1,101 @@
+package de.hsos.habiton.adapters;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import de.hsos.habiton.R;
+import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.databinding.HabitHistoryItemBinding;
+
+/**
+ * Adapter für die RecyclerView, um die tageweise Historie einer Gewohnheit anzuzeigen.
+ * Die Einträge werden seitenweise geliefert; noch nicht geladene Tage werden als leere Platzhalter dargestellt.
+ * @author Finn Garrels
+ */
+public class HabitHistoryAdapter extends PagingDataAdapter<HabitTracking, HabitHistoryAdapter.HistoryHolder> {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEEE, dd.MM.yyyy", Locale.getDefault());
+
+    /**
+     * Vergleicht Trackings anhand ihrer ID sowie Datum und Status.
+     */
+    private static final DiffUtil.ItemCallback<HabitTracking> DIFF_CALLBACK = new DiffUtil.ItemCallback<HabitTracking>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HabitTracking oldItem, @NonNull HabitTracking newItem) {
+            return oldItem.getTrackID() == newItem.getTrackID();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HabitTracking oldItem, @NonNull HabitTracking newItem) {
+            return oldItem.getDate().equals(newItem.getDate()) && oldItem.isStatus() == newItem.isStatus();
+        }
+    };
+
+    /**
+     * Konstruktor für den HabitHistoryAdapter.
+     */
+    public HabitHistoryAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    @NonNull
+    @Override
+    public HistoryHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        return new HistoryHolder(HabitHistoryItemBinding.inflate(inflater, parent, false));
+    }
+
+    /**
+     * Befüllt die Ansicht mit dem Tracking an der angegebenen Position oder leert sie für einen Platzhalter.
+     *
+     * @param holder   Der ViewHolder, der aktualisiert werden soll.
+     * @param position Die Position des Items in der Datenquelle.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull HistoryHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    /**
+     * ViewHolder-Klasse für einen Tag der Historie.
+     */
+    static class HistoryHolder extends RecyclerView.ViewHolder {
+        private final HabitHistoryItemBinding binding;
+
+        /**
+         * Konstruktor für den HistoryHolder.
+         *
+         * @param binding Das Binding-Objekt für die Ansicht.
+         */
+        HistoryHolder(HabitHistoryItemBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+
+        /**
+         * Bindet ein Tracking an die Ansicht.
+         *
+         * @param tracking Das Tracking oder null für einen noch nicht geladenen Tag.
+         */
+        void bind(HabitTracking tracking) {
+            if (tracking == null) {
+                binding.historyDate.setText(null);
+                binding.historyStatus.setText(null);
+                return;
+            }
+            binding.historyDate.setText(tracking.getDate().format(DATE_FORMAT));
+            binding.historyStatus.setText(tracking.isStatus() ? R.string.history_done : R.string.history_missed);
+            binding.historyStatus.setTextColor(ContextCompat.getColor(itemView.getContext(),
+                    tracking.isStatus() ? R.color.primary : R.color.subtext));
+        }
+    }
+}
@@ -6,18 +6,23 @@ import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import de.hsos.habiton.database.converters.LocalDateConverter;
 import de.hsos.habiton.database.daos.HabitDao;
 import de.hsos.habiton.database.daos.HabitTrackingDao;
 import de.hsos.habiton.database.models.Habit;
 import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.helpers.AppExecutors;
 
 /**
  * Die abstrakte Klasse für die Room-Datenbank.
  * @author Miikka Koensler
  */
-@Database(entities = {Habit.class, HabitTracking.class}, version = 13)
+@Database(entities = {Habit.class, HabitTracking.class}, version = 17)
+@TypeConverters(LocalDateConverter.class)
 public abstract class HabitDatabase extends RoomDatabase {
 
     private static HabitDatabase instance;
@@ -36,6 +41,75 @@ public abstract class HabitDatabase extends RoomDatabase {
      */
     public abstract HabitTrackingDao habitTrackingDao();
 
+    /**
+     * Migration von Version 13 auf 14: Führt doppelte Tracking-Einträge pro Gewohnheit und Tag zusammen
+     * und legt den eindeutigen Index auf (habitID, date) an. Ein Tag gilt als erledigt, wenn einer der
+     * zusammengeführten Einträge erledigt war. Es bleibt jeweils der älteste Eintrag erhalten; nur dieser wird
+     * angepasst, und nur in Gruppen mit Duplikaten. Beide Abfragen gruppieren die Tabelle einmal, statt sie
+     * pro Zeile erneut zu durchsuchen.
+     */
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE habit_tracking_table SET status = 1 WHERE trackID IN (" +
+                    "SELECT MIN(trackID) FROM habit_tracking_table GROUP BY habitID, date " +
+                    "HAVING COUNT(*) > 1 AND MAX(status) = 1)");
+            db.execSQL("DELETE FROM habit_tracking_table WHERE trackID NOT IN (" +
+                    "SELECT MIN(trackID) FROM habit_tracking_table GROUP BY habitID, date)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_habit_tracking_table_habitID_date " +
+                    "ON habit_tracking_table (habitID, date)");
+        }
+    };
+
+    /**
+     * Migration von Version 14 auf 15: Stellt die Datumsspalte der Trackings von ISO-Strings ("yyyy-MM-dd")
+     * auf Epoch-Days (INTEGER) um. SQLite kann Spaltentypen nicht ändern, daher wird die Tabelle neu angelegt.
+     */
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS habit_tracking_table_new (" +
+                    "trackID INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "habitID INTEGER NOT NULL, " +
+                    "date INTEGER NOT NULL, " +
+                    "status INTEGER NOT NULL, " +
+                    "FOREIGN KEY(habitID) REFERENCES habit_table(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("INSERT INTO habit_tracking_table_new (trackID, habitID, date, status) " +
+                    "SELECT trackID, habitID, CAST(julianday(date) - 2440587.5 AS INTEGER), status " +
+                    "FROM habit_tracking_table WHERE julianday(date) IS NOT NULL");
+            db.execSQL("DROP TABLE habit_tracking_table");
+            db.execSQL("ALTER TABLE habit_tracking_table_new RENAME TO habit_tracking_table");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_habit_tracking_table_habitID_date " +
+                    "ON habit_tracking_table (habitID, date)");
+        }
+    };
+
+    /**
+     * Migration von Version 15 auf 16: Ergänzt die Gewohnheiten um den Beginn der aktuellen und der längsten Streak.
+     * Die Spalten bleiben zunächst leer; betroffene Gewohnheiten werden beim nächsten täglichen Wechsel
+     * einmalig aus der Historie neu berechnet.
+     */
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE habit_table ADD COLUMN streakStart INTEGER");
+            db.execSQL("ALTER TABLE habit_table ADD COLUMN bestStreakStart INTEGER");
+        }
+    };
+
+    /**
+     * Migration von Version 16 auf 17: Legt einen eindeutigen Index auf den Namen der Gewohnheiten an.
+     * Bereits doppelt vergebene Namen werden vorher um die ID der Gewohnheit ergänzt; die älteste behält ihren Namen.
+     */
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE habit_table SET name = name || ' (' || id || ')' WHERE id NOT IN (" +
+                    "SELECT MIN(id) FROM habit_table GROUP BY name)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_habit_table_name ON habit_table (name)");
+        }
+    };
+
     /**
      * Stellt sicher, dass nur eine Instanz der Datenbank existiert.
      *
@@ -46,8 +120,10 @@ public abstract class HabitDatabase extends RoomDatabase {
         if (instance == null) {
             instance = Room.databaseBuilder(context.getApplicationContext(),
                             HabitDatabase.class, "habit_database")
-                    .fallbackToDestructiveMigration()
+                    .addMigrations(MIGRATION_13_14, MIGRATION_14_15, MIGRATION_15_16, MIGRATION_16_17)
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12)
                     .addCallback(roomCallback)
+                    .setQueryExecutor(AppExecutors.getInstance().diskRead())
                     .build();
         }
         return instance;
@@ -0,0 +1,35 @@
+package de.hsos.habiton.database.converters;
+
+import androidx.room.TypeConverter;
+
+import java.time.LocalDate;
+
+/**
+ * Room-TypeConverter, der ein {@link LocalDate} als Epoch-Day (Tage seit 1970-01-01) speichert.
+ * Dadurch bleiben Datumsvergleiche und Bereichsabfragen in SQLite einfache Ganzzahlvergleiche.
+ * @author Miikka Koensler
+ */
+public class LocalDateConverter {
+
+    /**
+     * Wandelt ein Datum in seinen Epoch-Day um.
+     *
+     * @param date Das umzuwandelnde Datum.
+     * @return Der Epoch-Day oder null, wenn kein Datum übergeben wurde.
+     */
+    @TypeConverter
+    public static Long fromLocalDate(LocalDate date) {
+        return date == null ? null : date.toEpochDay();
+    }
+
+    /**
+     * Wandelt einen Epoch-Day zurück in ein Datum um.
+     *
+     * @param epochDay Der gespeicherte Epoch-Day.
+     * @return Das Datum oder null, wenn kein Wert gespeichert ist.
+     */
+    @TypeConverter
+    public static LocalDate toLocalDate(Long epochDay) {
+        return epochDay == null ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
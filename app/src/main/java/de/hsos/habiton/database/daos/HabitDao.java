@@ -4,12 +4,15 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
-import androidx.room.Update;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import de.hsos.habiton.database.models.Habit;
+import de.hsos.habiton.database.models.HabitSummary;
+import de.hsos.habiton.database.models.HabitWithStatus;
 
 /**
  * Data Access Object (DAO) für die Habit-Entität.
@@ -20,20 +23,26 @@ public interface HabitDao {
 
     /**
      * Fügt eine neue Gewohnheit in die Datenbank ein.
+     * Existiert bereits eine Gewohnheit mit demselben Namen, wird nichts eingefügt.
      *
      * @param habit Die einzufügende Gewohnheit.
-     * @return Die ID der eingefügten Gewohnheit.
+     * @return Die ID der eingefügten Gewohnheit oder -1, wenn der Name bereits vergeben ist.
      */
-    @Insert
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     long insert(Habit habit);
 
     /**
-     * Aktualisiert eine vorhandene Gewohnheit in der Datenbank.
+     * Aktualisiert Name, Beschreibung und Icon einer vorhandenen Gewohnheit. Der Streak-Zustand bleibt unverändert.
+     * Ist der neue Name bereits an eine andere Gewohnheit vergeben, wird nichts geändert.
      *
-     * @param habit Die zu aktualisierende Gewohnheit.
+     * @param id          Die ID der Gewohnheit.
+     * @param name        Der neue Name.
+     * @param description Die neue Beschreibung.
+     * @param icon        Das neue Icon.
+     * @return Die Anzahl der geänderten Gewohnheiten.
      */
-    @Update
-    void update(Habit habit);
+    @Query("UPDATE OR IGNORE habit_table SET name = :name, description = :description, icon = :icon WHERE id = :id")
+    int updateDetails(int id, String name, String description, String icon);
 
     /**
      * Löscht eine vorhandene Gewohnheit aus der Datenbank.
@@ -44,125 +53,96 @@ public interface HabitDao {
     void delete(Habit habit);
 
     /**
-     * Gibt alle Gewohnheiten zurück, die an einem bestimmten Datum verfolgt wurden.
+     * Gibt alle Gewohnheiten zusammen mit ihrem Status an einem bestimmten Datum zurück.
+     * Erledigte Gewohnheiten stehen vorne, danach wird nach ID sortiert.
      *
-     * @param date Das Datum, für das die Gewohnheiten abgerufen werden sollen.
-     * @return Eine LiveData-Liste von Gewohnheiten.
+     * @param date Das Datum, für das der Status abgerufen werden soll.
+     * @return Eine LiveData-Liste von Gewohnheiten mit Tagesstatus.
      */
-    @Query("SELECT habit_table.* FROM habit_table " +
+    @Query("SELECT habit_table.*, COALESCE(habit_tracking_table.status, 0) AS status FROM habit_table " +
             "LEFT JOIN habit_tracking_table ON habit_table.id = habit_tracking_table.habitId " +
             "AND habit_tracking_table.date = :date " +
             "ORDER BY habit_tracking_table.status DESC, habit_table.id ASC")
-    LiveData<List<Habit>> getAllHabits(String date);
+    LiveData<List<HabitWithStatus>> getAllHabitsWithStatus(LocalDate date);
 
     /**
-     * Überprüft, ob eine Gewohnheit mit einem bestimmten Namen bereits existiert.
-     *
-     * @param name Der Name der zu überprüfenden Gewohnheit.
-     * @return true, wenn die Gewohnheit existiert, sonst false.
-     */
-    @Query("SELECT COUNT(id) > 0 FROM habit_table WHERE name = :name")
-    boolean doesHabitExist(String name);
-
-    /**
-     * Gibt alle Titel der vorhandenen Gewohnheiten zurück.
-     *
-     * @return Eine LiveData-Liste von Gewohnheitstiteln.
-     */
-    @Query("SELECT name FROM habit_table")
-    LiveData<List<String>> getAllHabitTitles();
-
-    /**
-     * Gibt eine Gewohnheit anhand ihrer ID zurück.
+     * Gibt alle Gewohnheiten zurück.
      *
-     * @param habitId Die ID der abzurufenden Gewohnheit.
-     * @return Die entsprechende Gewohnheit oder null, wenn keine gefunden wurde.
+     * @return Eine Liste aller Gewohnheiten.
      */
-    @Query("SELECT * FROM habit_table WHERE id = :habitId")
-    Habit getHabitById(int habitId);
+    @Query("SELECT * FROM habit_table")
+    List<Habit> getAllHabits();
 
     /**
-     * Gibt die ID einer Gewohnheit anhand ihres Titels zurück.
+     * Gibt die Anzahl aller Gewohnheiten zurück.
      *
-     * @param name Der Titel der Gewohnheit.
-     * @return Die ID der Gewohnheit oder -1, wenn keine gefunden wurde.
+     * @return Die Anzahl der Gewohnheiten.
      */
-    @Query("SELECT id FROM habit_table WHERE name = :name LIMIT 1")
-    int getHabitIdByTitle(String name);
+    @Query("SELECT COUNT(*) FROM habit_table")
+    int getHabitCount();
 
     /**
-     * Inkrementiert den Streak für eine bestimmte Gewohnheit.
+     * Gibt ID, Name und Icon aller Gewohnheiten zurück, sortiert nach ID.
      *
-     * @param habitId Die ID der Gewohnheit, deren Streak erhöht werden soll.
+     * @return Eine LiveData-Liste der Stammdaten aller Gewohnheiten.
      */
-    @Query("UPDATE habit_table SET streak = streak + 1 WHERE id = :habitId")
-    void incrementStreak(int habitId);
+    @Query("SELECT id, name, icon FROM habit_table ORDER BY id")
+    LiveData<List<HabitSummary>> getHabitSummaries();
 
     /**
-     * Dekrementiert den Streak für eine bestimmte Gewohnheit.
+     * Gibt den längsten Streak aller Gewohnheiten zurück.
      *
-     * @param habitId Die ID der Gewohnheit, deren Streak verringert werden soll.
+     * @return Die längste Serienlänge.
      */
-    @Query("UPDATE habit_table SET streak = streak - 1 WHERE id = :habitId")
-    void decrementStreak(int habitId);
+    @Query("SELECT MAX(longestStreak) FROM habit_table")
+    LiveData<Integer> getMaxLongestStreak();
 
     /**
-     * Setzt den Streak einer bestimmten Gewohnheit auf 0 zurück.
+     * Gibt den längsten Streak einer Gewohnheit zurück und aktualisiert ihn bei jeder Änderung.
      *
-     * @param habitId Die ID der Gewohnheit, deren Streak zurückgesetzt werden soll.
+     * @param id Die ID der Gewohnheit.
+     * @return Die längste Serienlänge der Gewohnheit.
      */
-    @Query("UPDATE habit_table SET streak = 0 WHERE id = :habitId")
-    void resetStreak(int habitId);
+    @Query("SELECT longestStreak FROM habit_table WHERE id = :id")
+    LiveData<Integer> getLongestStreak(int id);
 
     /**
-     * Gibt alle Gewohnheiten zurück.
+     * Gibt den längsten Streak aller Gewohnheiten synchron zurück.
      *
-     * @return Eine Liste von Gewohnheiten.
+     * @return Die längste Serienlänge oder null, wenn keine Gewohnheiten existieren.
      */
-    @Query("SELECT * FROM habit_table")
-    List<Habit> getAllHabits();
+    @Query("SELECT MAX(longestStreak) FROM habit_table")
+    Integer getMaxLongestStreakValue();
 
     /**
-     * Gibt den Streak einer bestimmten Gewohnheit zurück.
+     * Gibt den längsten Streak einer Gewohnheit zurück.
      *
      * @param habitId Die ID der Gewohnheit.
-     * @return Der Streak der Gewohnheit.
+     * @return Die längste Serienlänge oder null, wenn die Gewohnheit nicht existiert.
      */
-    @Query("SELECT streak FROM habit_table WHERE id = :habitId")
-    int getStreakForHabit(int habitId);
-
-    /**
-     * Aktualisiert den längsten Streak einer bestimmten Gewohnheit.
-     *
-     * @param habitId       Die ID der Gewohnheit.
-     * @param longestStreak Der neue längste Streak.
-     */
-    @Query("UPDATE habit_table SET longestStreak = :longestStreak WHERE id = :habitId")
-    void updateLongestStreak(int habitId, int longestStreak);
-
-    /**
-     * Gibt den längsten Streak aller Gewohnheiten zurück.
-     *
-     * @return Die längste Serienlänge.
-     */
-    @Query("SELECT MAX(longestStreak) FROM habit_table")
-    LiveData<Integer> getMaxLongestStreak();
+    @Query("SELECT longestStreak FROM habit_table WHERE id = :habitId")
+    Integer getLongestStreak(int habitId);
 
     /**
-     * Gibt den längsten Streak einer bestimmten Gewohnheit zurück.
+     * Gibt die IDs aller Gewohnheiten zurück, deren Streak-Zustand unvollständig ist,
+     * etwa nach einer Migration. Diese müssen aus der Historie neu berechnet werden.
      *
-     * @param habitId Die ID der Gewohnheit.
-     * @return Der längste Streak der Gewohnheit.
+     * @return Eine Liste von Gewohnheits-IDs.
      */
-    @Query("SELECT longestStreak FROM habit_table WHERE id = :habitId")
-    int getMaxLongestStreak(int habitId);
+    @Query("SELECT id FROM habit_table WHERE (streak > 0 AND streakStart IS NULL) " +
+            "OR (longestStreak > 0 AND bestStreakStart IS NULL)")
+    List<Integer> getHabitIdsWithIncompleteStreaks();
 
     /**
-     * Gibt das Icon einer Gewohnheit anhand ihres Namens zurück.
+     * Überschreibt den gesamten Streak-Zustand einer Gewohnheit.
      *
-     * @param name Der Name der Gewohnheit.
-     * @return Das Symbol der Gewohnheit.
+     * @param habitId         Die ID der Gewohnheit.
+     * @param streak          Die Länge der aktuellen Streak.
+     * @param streakStart     Der erste Tag der aktuellen Streak oder null.
+     * @param longestStreak   Die Länge der längsten Streak.
+     * @param bestStreakStart Der erste Tag der längsten Streak oder null.
      */
-    @Query("SELECT icon FROM habit_table WHERE name = :name")
-    String getIconByName(String name);
+    @Query("UPDATE habit_table SET streak = :streak, streakStart = :streakStart, " +
+            "longestStreak = :longestStreak, bestStreakStart = :bestStreakStart WHERE id = :habitId")
+    void updateStreakState(int habitId, int streak, LocalDate streakStart, int longestStreak, LocalDate bestStreakStart);
 }
@@ -1,12 +1,20 @@
 package de.hsos.habiton.database.daos;
 
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import de.hsos.habiton.database.models.CompletionCount;
+import de.hsos.habiton.database.models.DailyCompletion;
 import de.hsos.habiton.database.models.HabitTracking;
 
 /**
@@ -16,102 +24,222 @@ import de.hsos.habiton.database.models.HabitTracking;
 @Dao
 public interface HabitTrackingDao {
 
+    /**
+     * Empfängt beim Durchlaufen der Tracking-Tabelle eine Zeile nach der anderen als primitive Werte.
+     */
+    interface TrackingVisitor {
+        /**
+         * Wird für jede Zeile aufgerufen.
+         *
+         * @param habitId  Die ID der Gewohnheit.
+         * @param epochDay Das Datum als Epoch-Day.
+         * @param status   Der Status an diesem Tag.
+         */
+        void visit(int habitId, long epochDay, boolean status);
+    }
+
     /**
      * Fügt eine neue Gewohnheitsverfolgung in die Datenbank ein.
+     * Existiert für die Gewohnheit an diesem Datum bereits ein Eintrag, wird nichts eingefügt.
      *
      * @param habitTracking Die einzufügende Gewohnheitsverfolgung.
      */
-    @Insert
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     void insert(HabitTracking habitTracking);
 
     /**
-     * Gibt die Anzahl der abgeschlossenen Gewohnheiten für ein bestimmtes Datum zurück.
+     * Gibt für jeden Tag in einem Datumsbereich die Anzahl der erledigten und aller getrackten Gewohnheiten zurück.
+     * Tage ohne Trackings sind im Ergebnis nicht enthalten.
      *
-     * @param date Das Datum, für das die abgeschlossenen Gewohnheiten gezählt werden sollen.
-     * @return Die Anzahl der abgeschlossenen Gewohnheiten als LiveData.
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
+     * @return Eine LiveData-Liste der Tageswerte, sortiert nach Datum.
      */
-    @Query("SELECT COUNT(*) FROM habit_tracking_table WHERE date = :date AND status = 1")
-    LiveData<Integer> getCountOfCompletedHabitsOnDate(String date);
+    @Query("SELECT date, SUM(status) AS completed, COUNT(*) AS total FROM habit_tracking_table " +
+            "WHERE date BETWEEN :from AND :to GROUP BY date ORDER BY date")
+    LiveData<List<DailyCompletion>> getDailyCompletionsBetween(LocalDate from, LocalDate to);
 
     /**
-     * Zählt alle Gewohnheiten für ein bestimmtes Datum.
+     * Gibt für jeden Tag in einem Datumsbereich die Anzahl der erledigten und aller getrackten Gewohnheiten synchron zurück.
+     * Tage ohne Trackings sind im Ergebnis nicht enthalten.
      *
-     * @param date Das Datum, für das die Gewohnheiten gezählt werden sollen.
-     * @return Die Anzahl der Gewohnheiten als LiveData.
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
+     * @return Eine Liste der Tageswerte, sortiert nach Datum.
      */
-    @Query("SELECT COUNT(*) FROM habit_tracking_table WHERE date = :date")
-    LiveData<Integer> countHabitsForDate(String date);
+    @Query("SELECT date, SUM(status) AS completed, COUNT(*) AS total FROM habit_tracking_table " +
+            "WHERE date BETWEEN :from AND :to GROUP BY date ORDER BY date")
+    List<DailyCompletion> getDailyCompletionListBetween(LocalDate from, LocalDate to);
 
     /**
-     * Sucht Gewohnheiten, die an einem bestimmten Datum nicht erledigt wurden.
+     * Gibt höchstens {@code limit} Trackings einer Gewohnheit bis einschließlich eines Datums zurück, neueste zuerst.
+     * Die Abfrage blättert über den Index auf (habitID, date) und ist unabhängig von der Länge der Historie.
      *
-     * @param date Das Datum, für das die nicht erledigten Gewohnheiten gesucht werden sollen.
-     * @return Eine Liste von IDs der nicht erledigten Gewohnheiten.
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das späteste Datum.
+     * @param limit   Die maximale Anzahl an Trackings.
+     * @return Eine Liste der Trackings, absteigend nach Datum sortiert.
      */
-    @Query("SELECT habitID FROM habit_tracking_table WHERE date = :date AND status = 0")
-    List<Integer> findHabitsNotDoneOnDate(String date);
+    @Query("SELECT * FROM habit_tracking_table WHERE habitID = :habitId AND date <= :date ORDER BY date DESC LIMIT :limit")
+    List<HabitTracking> getTrackingsUpTo(int habitId, LocalDate date, int limit);
 
     /**
-     * Löscht alle Verfolgungen für eine bestimmte Gewohnheit.
+     * Gibt höchstens {@code limit} Trackings einer Gewohnheit ab einschließlich eines Datums zurück, älteste zuerst.
      *
-     * @param habitId Die ID der Gewohnheit, deren Verfolgungen gelöscht werden sollen.
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das früheste Datum.
+     * @param limit   Die maximale Anzahl an Trackings.
+     * @return Eine Liste der Trackings, aufsteigend nach Datum sortiert.
      */
-    @Query("DELETE FROM habit_tracking_table WHERE habitID = :habitId")
-    void deleteAllTrackingsForHabit(long habitId);
+    @Query("SELECT * FROM habit_tracking_table WHERE habitID = :habitId AND date >= :date ORDER BY date ASC LIMIT :limit")
+    List<HabitTracking> getTrackingsFrom(int habitId, LocalDate date, int limit);
 
     /**
-     * Aktualisiert den Status einer Gewohnheit für ein bestimmtes Datum.
+     * Zählt die Trackings einer Gewohnheit nach einem Datum.
      *
-     * @param isDone   Der neue Status der Gewohnheit.
-     * @param habitId  Die ID der Gewohnheit.
-     * @param date     Das Datum, für das der Status aktualisiert werden soll.
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum (exklusive).
+     * @return Die Anzahl der späteren Trackings.
      */
-    @Query("UPDATE habit_tracking_table SET status = :isDone WHERE habitID = :habitId AND date = :date")
-    void updateIsDone(boolean isDone, int habitId, String date);
+    @Query("SELECT COUNT(*) FROM habit_tracking_table WHERE habitID = :habitId AND date > :date")
+    int countTrackingsAfter(int habitId, LocalDate date);
 
     /**
-     * Gibt die Verfolgung für eine bestimmte Gewohnheit und ein bestimmtes Datum zurück.
+     * Zählt die Trackings einer Gewohnheit vor einem Datum.
      *
      * @param habitId Die ID der Gewohnheit.
-     * @param date    Das Datum.
-     * @return Die Gewohnheitsverfolgung oder null, wenn keine gefunden wurde.
+     * @param date    Das Datum (exklusive).
+     * @return Die Anzahl der früheren Trackings.
      */
-    @Query("SELECT * FROM habit_tracking_table WHERE habitID = :habitId AND date = :date LIMIT 1")
-    HabitTracking getTrackingForHabitAndDate(int habitId, String date);
+    @Query("SELECT COUNT(*) FROM habit_tracking_table WHERE habitID = :habitId AND date < :date")
+    int countTrackingsBefore(int habitId, LocalDate date);
 
     /**
-     * Gibt alle Verfolgungen für ein bestimmtes Datum zurück.
+     * Zählt die erledigten Trackings einer Gewohnheit in einem Datumsbereich.
+     * Erwartet wird eine Erledigung pro Tag des Bereichs.
      *
-     * @param date Das Datum.
-     * @return Eine LiveData-Liste von Gewohnheitsverfolgungen.
+     * @param habitId Die ID der Gewohnheit.
+     * @param from    Das erste Datum des Bereichs.
+     * @param to      Das letzte Datum des Bereichs.
+     * @param signal  Das Signal, über das die Abfrage abgebrochen werden kann.
+     * @return Die erledigten und erwarteten Erledigungen.
      */
-    @Query("SELECT * FROM habit_tracking_table WHERE date = :date")
-    LiveData<List<HabitTracking>> getHabitTrackingsForDate(String date);
+    @Query("SELECT COALESCE(SUM(status), 0) AS completed, :to - :from + 1 AS expected " +
+            "FROM habit_tracking_table WHERE habitID = :habitId AND date BETWEEN :from AND :to")
+    CompletionCount getCompletionCountForHabit(int habitId, LocalDate from, LocalDate to, CancellationSignal signal);
 
     /**
-     * Gibt alle Verfolgungen in der Datenbank zurück.
+     * Zählt die erledigten Trackings aller Gewohnheiten in einem Datumsbereich.
+     * Erwartet wird eine Erledigung pro Gewohnheit und Tag des Bereichs.
      *
-     * @return Eine Liste von Gewohnheitsverfolgungen.
+     * @param from   Das erste Datum des Bereichs.
+     * @param to     Das letzte Datum des Bereichs.
+     * @param signal Das Signal, über das die Abfrage abgebrochen werden kann.
+     * @return Die erledigten und erwarteten Erledigungen.
      */
-    @Query("SELECT * FROM habit_tracking_table")
-    List<HabitTracking> getAllTrackings();
+    @Query("SELECT (SELECT COALESCE(SUM(status), 0) FROM habit_tracking_table WHERE date BETWEEN :from AND :to) AS completed, " +
+            "(SELECT COUNT(*) FROM habit_table) * (:to - :from + 1) AS expected")
+    CompletionCount getOverallCompletionCount(LocalDate from, LocalDate to, CancellationSignal signal);
 
     /**
-     * Gibt alle Verfolgungen für eine bestimmte Gewohnheit zurück.
+     * Gibt das Datum zurück, bis zu dem der tägliche Wechsel für alle Gewohnheiten ausgeführt wurde.
+     * Das ist das kleinste der jeweils letzten Tracking-Daten der Gewohnheiten.
      *
-     * @param habitId Die ID der Gewohnheit.
-     * @return Eine Liste von Gewohnheitsverfolgungen.
+     * @return Das Datum oder null, wenn noch keine Trackings existieren.
+     */
+    @Query("SELECT MIN(lastDate) FROM (SELECT MAX(date) AS lastDate FROM habit_tracking_table GROUP BY habitID)")
+    LocalDate getLastRolloverDate();
+
+    /**
+     * Setzt den Streak aller Gewohnheiten zurück, die an mindestens einem Tag eines Datumsbereichs nicht erledigt wurden.
+     *
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
+     */
+    @Query("UPDATE habit_table SET streak = 0, streakStart = NULL WHERE id IN (" +
+            "SELECT habitID FROM habit_tracking_table WHERE date BETWEEN :from AND :to AND status = 0)")
+    void resetStreaksNotDoneBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Legt für alle Tage eines Datumsbereichs offene Trackings an, und zwar für jede Gewohnheit,
+     * die vor dem jeweiligen Tag bereits ein Tracking hatte. Die Tage werden in SQL erzeugt,
+     * sodass der gesamte Bereich mit einer Anweisung nachgetragen wird.
+     * Bereits vorhandene Trackings bleiben unverändert.
+     *
+     * @param from Das erste nachzutragende Datum.
+     * @param to   Das letzte nachzutragende Datum.
+     */
+    @Query("WITH RECURSIVE days(day) AS (SELECT :from UNION ALL SELECT day + 1 FROM days WHERE day < :to) " +
+            "INSERT OR IGNORE INTO habit_tracking_table (habitID, date, status) " +
+            "SELECT habit_table.id, days.day, 0 FROM habit_table, days " +
+            "WHERE EXISTS (SELECT 1 FROM habit_tracking_table WHERE habitID = habit_table.id AND date < days.day)")
+    void insertMissingTrackingsBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Legt für alle Gewohnheiten ein offenes Tracking für ein bestimmtes Datum an.
+     * Bereits vorhandene Trackings für dieses Datum bleiben unverändert.
+     *
+     * @param date Das Datum der neuen Trackings.
+     */
+    @Query("INSERT OR IGNORE INTO habit_tracking_table (habitID, date, status) SELECT id, :date, 0 FROM habit_table")
+    void insertTrackingsForAllHabits(LocalDate date);
+
+    /**
+     * Führt den täglichen Wechsel in einer Transaktion aus und holt dabei verpasste Tage nach.
+     * Alle Tage zwischen dem letzten Wechsel und gestern werden für jede Gewohnheit als nicht erledigt nachgetragen,
+     * Streaks von Gewohnheiten, die an einem dieser Tage nicht erledigt wurden, werden zurückgesetzt,
+     * und für heute werden offene Trackings angelegt.
+     * Wurde der Wechsel für heute bereits ausgeführt, wird nur noch das Anlegen der heutigen Trackings versucht,
+     * das keine Zeilen mehr ändert.
+     *
+     * @param today Das heutige Datum.
+     */
+    @Transaction
+    default void performDailyRollover(LocalDate today) {
+        LocalDate lastRolloverDate = getLastRolloverDate();
+        if (lastRolloverDate != null && lastRolloverDate.isBefore(today)) {
+            LocalDate yesterday = today.minusDays(1);
+            if (lastRolloverDate.isBefore(yesterday)) {
+                insertMissingTrackingsBetween(lastRolloverDate.plusDays(1), yesterday);
+            }
+            resetStreaksNotDoneBetween(lastRolloverDate, yesterday);
+        }
+        insertTrackingsForAllHabits(today);
+    }
+
+    /**
+     * Löscht alle Verfolgungen für eine bestimmte Gewohnheit.
+     *
+     * @param habitId Die ID der Gewohnheit, deren Verfolgungen gelöscht werden sollen.
      */
-    @Query("SELECT * FROM habit_tracking_table WHERE habitId = :habitId")
-    List<HabitTracking> getTrackingsForHabit(int habitId);
+    @Query("DELETE FROM habit_tracking_table WHERE habitID = :habitId")
+    void deleteAllTrackingsForHabit(long habitId);
 
     /**
-     * Gibt die IDs aller Gewohnheiten zurück.
+     * Öffnet einen Cursor über Gewohnheit, Datum und Status aller Verfolgungen, sortiert nach Gewohnheit und Datum.
+     * Die Spalten liegen in dieser Reihenfolge an den Indizes 0 bis 2.
      *
-     * @return Eine Liste von Gewohnheits-IDs.
+     * @return Ein Cursor, der vom Aufrufer geschlossen werden muss.
      */
-    @Query("SELECT id FROM habit_table")
-    List<Integer> getAllHabitIds();
+    @Query("SELECT habitID, date, status FROM habit_tracking_table ORDER BY habitID, date")
+    Cursor getAllTrackingsCursor();
+
+    /**
+     * Durchläuft alle Verfolgungen sortiert nach Gewohnheit und Datum und übergibt jede Zeile dem Visitor.
+     * Pro Zeile wird kein Objekt angelegt; der Speicherbedarf ist unabhängig von der Länge der Historie auf
+     * das Cursor-Fenster begrenzt. Die Transaktion stellt sicher, dass beim Nachladen weiterer Fenster
+     * keine Zeilen durch gleichzeitige Schreibzugriffe übersprungen oder doppelt geliefert werden.
+     *
+     * @param visitor Der Visitor, der jede Zeile erhält.
+     */
+    @Transaction
+    default void forEachTracking(TrackingVisitor visitor) {
+        try (Cursor cursor = getAllTrackingsCursor()) {
+            while (cursor.moveToNext()) {
+                visitor.visit(cursor.getInt(0), cursor.getLong(1), cursor.getInt(2) != 0);
+            }
+        }
+    }
 
     /**
      * Gibt den Status einer Gewohnheit für das aktuelle Datum zurück.
@@ -121,5 +249,62 @@ public interface HabitTrackingDao {
      * @return Der Status der Gewohnheit für das aktuelle Datum.
      */
     @Query("SELECT status FROM habit_tracking_table WHERE habitId = :habitId AND date = :currentDate")
-    Integer getHabitStatusForCurrentDate(int habitId, String currentDate);
+    Integer getHabitStatusForCurrentDate(int habitId, LocalDate currentDate);
+
+    /**
+     * Kehrt den Status einer Gewohnheit für ein bestimmtes Datum um.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum, dessen Status umgekehrt werden soll.
+     * @return Die Anzahl der geänderten Einträge (0, wenn kein Tracking existiert).
+     */
+    @Query("UPDATE habit_tracking_table SET status = NOT status WHERE habitID = :habitId AND date = :date")
+    int invertStatus(int habitId, LocalDate date);
+
+    /**
+     * Passt den Streak-Zustand einer Gewohnheit in konstanter Zeit an einen geänderten Tagesstatus an.
+     * Beim Erledigen wird der Streak erhöht, bei Bedarf beginnt eine neue Streak an diesem Datum und der
+     * längste Streak wird mitgezogen. Beim Zurücknehmen wird der Streak verringert (nicht unter 0); war die
+     * aktuelle Streak zugleich die längste, wird auch diese verringert, da jede frühere Streak kürzer war.
+     * Alle Ausdrücke beziehen sich auf die Werte vor der Änderung.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum, dessen Status geändert wurde.
+     * @param done    Der neue Status der Gewohnheit.
+     */
+    @Query("UPDATE habit_table SET " +
+            "bestStreakStart = CASE " +
+            "WHEN :done AND streak + 1 > longestStreak THEN CASE WHEN streak = 0 THEN :date ELSE streakStart END " +
+            "WHEN NOT :done AND bestStreakStart = streakStart AND longestStreak = streak AND streak <= 1 THEN NULL " +
+            "ELSE bestStreakStart END, " +
+            "longestStreak = CASE " +
+            "WHEN :done THEN MAX(longestStreak, streak + 1) " +
+            "WHEN bestStreakStart = streakStart AND longestStreak = streak THEN MAX(streak - 1, 0) " +
+            "ELSE longestStreak END, " +
+            "streakStart = CASE " +
+            "WHEN :done THEN CASE WHEN streak = 0 THEN :date ELSE streakStart END " +
+            "WHEN streak <= 1 THEN NULL " +
+            "ELSE streakStart END, " +
+            "streak = CASE WHEN :done THEN streak + 1 ELSE MAX(streak - 1, 0) END " +
+            "WHERE id = :habitId")
+    void applyStatusToStreak(int habitId, LocalDate date, boolean done);
+
+    /**
+     * Wechselt den Status einer Gewohnheit für ein Datum und passt die Streaks in einer Transaktion an.
+     * Es werden unabhängig vom Zustand genau drei Anweisungen ausgeführt.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum, dessen Status gewechselt werden soll.
+     * @return Der neue Status oder null, wenn für das Datum kein Tracking existiert.
+     */
+    @Transaction
+    default Boolean toggleStatus(int habitId, LocalDate date) {
+        if (invertStatus(habitId, date) == 0) {
+            return null;
+        }
+        Integer status = getHabitStatusForCurrentDate(habitId, date);
+        boolean done = status != null && status == 1;
+        applyStatusToStreak(habitId, date, done);
+        return done;
+    }
 }
@@ -0,0 +1,49 @@
+package de.hsos.habiton.database.models;
+
+/**
+ * Projektion, die für einen Zeitraum die Anzahl der erledigten und der erwarteten Erledigungen enthält.
+ * Wird für die Berechnung der Abschlussraten direkt in SQL aggregiert.
+ * @author Finn Garrels
+ */
+public class CompletionCount {
+    private final int completed;
+    private final int expected;
+
+    /**
+     * Konstruktor für die CompletionCount-Klasse.
+     *
+     * @param completed Die Anzahl der erledigten Trackings im Zeitraum.
+     * @param expected  Die Anzahl der im Zeitraum erwarteten Erledigungen.
+     */
+    public CompletionCount(int completed, int expected) {
+        this.completed = completed;
+        this.expected = expected;
+    }
+
+    /**
+     * Gibt die Anzahl der erledigten Trackings zurück.
+     *
+     * @return Die Anzahl der erledigten Trackings.
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gibt die Anzahl der erwarteten Erledigungen zurück.
+     *
+     * @return Die Anzahl der erwarteten Erledigungen.
+     */
+    public int getExpected() {
+        return expected;
+    }
+
+    /**
+     * Gibt die Abschlussrate in Prozent zurück.
+     *
+     * @return Die Abschlussrate oder 0, wenn keine Erledigungen erwartet wurden.
+     */
+    public double getPercentage() {
+        return expected == 0 ? 0 : (double) completed / expected * 100;
+    }
+}
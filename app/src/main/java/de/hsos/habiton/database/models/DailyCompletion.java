@@ -0,0 +1,52 @@
+package de.hsos.habiton.database.models;
+
+/**
+ * Projektion, die für einen Tag die Anzahl der erledigten und aller getrackten Gewohnheiten enthält.
+ * Wird von der Heatmap der Analyseansicht verwendet.
+ * @author Finn Garrels
+ */
+public class DailyCompletion {
+    private final long date;
+    private final int completed;
+    private final int total;
+
+    /**
+     * Konstruktor für die DailyCompletion-Klasse.
+     *
+     * @param date      Der Tag als Epoch-Day.
+     * @param completed Die Anzahl der an diesem Tag erledigten Gewohnheiten.
+     * @param total     Die Anzahl aller an diesem Tag getrackten Gewohnheiten.
+     */
+    public DailyCompletion(long date, int completed, int total) {
+        this.date = date;
+        this.completed = completed;
+        this.total = total;
+    }
+
+    /**
+     * Gibt den Tag als Epoch-Day zurück.
+     *
+     * @return Der Tag als Epoch-Day.
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Gibt die Anzahl der erledigten Gewohnheiten zurück.
+     *
+     * @return Die Anzahl der erledigten Gewohnheiten.
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gibt die Anzahl aller getrackten Gewohnheiten zurück.
+     *
+     * @return Die Anzahl aller getrackten Gewohnheiten.
+     */
+    public int getTotal() {
+        return total;
+    }
+}
@@ -1,13 +1,16 @@
 package de.hsos.habiton.database.models;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.time.LocalDate;
+
 /**
  * Eine Entitätsklasse, die eine Gewohnheit in der Datenbank darstellt.
  * @author Miikka Koensler
  */
-@Entity(tableName = "habit_table")
+@Entity(tableName = "habit_table", indices = {@Index(value = {"name"}, unique = true)})
 public class Habit {
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -16,6 +19,8 @@ public class Habit {
     private int streak;
     private int longestStreak;
     private String icon;
+    private LocalDate streakStart;
+    private LocalDate bestStreakStart;
 
     /**
      * Konstruktor für die Habit-Klasse.
@@ -140,4 +145,40 @@ public class Habit {
     public int getLongestStreak() {
         return longestStreak;
     }
+
+    /**
+     * Gibt den ersten Tag der aktuellen Streak zurück.
+     *
+     * @return Der erste Tag der aktuellen Streak oder null, wenn keine Streak läuft.
+     */
+    public LocalDate getStreakStart() {
+        return streakStart;
+    }
+
+    /**
+     * Legt den ersten Tag der aktuellen Streak fest.
+     *
+     * @param streakStart Der zu setzende erste Tag der aktuellen Streak.
+     */
+    public void setStreakStart(LocalDate streakStart) {
+        this.streakStart = streakStart;
+    }
+
+    /**
+     * Gibt den ersten Tag der längsten Streak zurück.
+     *
+     * @return Der erste Tag der längsten Streak oder null, wenn es noch keine gab.
+     */
+    public LocalDate getBestStreakStart() {
+        return bestStreakStart;
+    }
+
+    /**
+     * Legt den ersten Tag der längsten Streak fest.
+     *
+     * @param bestStreakStart Der zu setzende erste Tag der längsten Streak.
+     */
+    public void setBestStreakStart(LocalDate bestStreakStart) {
+        this.bestStreakStart = bestStreakStart;
+    }
 }
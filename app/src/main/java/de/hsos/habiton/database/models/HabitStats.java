@@ -0,0 +1,52 @@
+package de.hsos.habiton.database.models;
+
+/**
+ * Die Kennzahlen einer Gewohnheit für die Analyseansicht: aktuelle Streak, längste Streak und Abschlussrate.
+ * Die Streaks stammen aus den gespeicherten Spalten der Gewohnheit, die Abschlussrate aus dem Abschluss-Index.
+ * @author Finn Garrels
+ */
+public class HabitStats {
+    private final int currentStreak;
+    private final int bestStreak;
+    private final double completionRate;
+
+    /**
+     * Konstruktor für die HabitStats-Klasse.
+     *
+     * @param currentStreak  Die Länge der aktuellen Streak.
+     * @param bestStreak     Die Länge der längsten Streak.
+     * @param completionRate Die Abschlussrate im gewählten Zeitraum in Prozent.
+     */
+    public HabitStats(int currentStreak, int bestStreak, double completionRate) {
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+        this.completionRate = completionRate;
+    }
+
+    /**
+     * Gibt die Länge der aktuellen Streak zurück.
+     *
+     * @return Die Länge der aktuellen Streak.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * Gibt die Länge der längsten Streak zurück.
+     *
+     * @return Die Länge der längsten Streak.
+     */
+    public int getBestStreak() {
+        return bestStreak;
+    }
+
+    /**
+     * Gibt die Abschlussrate im gewählten Zeitraum zurück.
+     *
+     * @return Die Abschlussrate in Prozent.
+     */
+    public double getCompletionRate() {
+        return completionRate;
+    }
+}
@@ -0,0 +1,52 @@
+package de.hsos.habiton.database.models;
+
+/**
+ * Projektion mit den Stammdaten einer Gewohnheit (ID, Name und Icon).
+ * Wird für die Auswahl von Gewohnheiten in der Analyseansicht verwendet.
+ * @author Finn Garrels
+ */
+public class HabitSummary {
+    private final int id;
+    private final String name;
+    private final String icon;
+
+    /**
+     * Konstruktor für die HabitSummary-Klasse.
+     *
+     * @param id   Die ID der Gewohnheit.
+     * @param name Der Name der Gewohnheit.
+     * @param icon Das Symbol (Icon) der Gewohnheit.
+     */
+    public HabitSummary(int id, String name, String icon) {
+        this.id = id;
+        this.name = name;
+        this.icon = icon;
+    }
+
+    /**
+     * Gibt die ID der Gewohnheit zurück.
+     *
+     * @return Die ID der Gewohnheit.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gibt den Namen der Gewohnheit zurück.
+     *
+     * @return Der Name der Gewohnheit.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gibt das Symbol (Icon) der Gewohnheit zurück.
+     *
+     * @return Das Symbol der Gewohnheit.
+     */
+    public String getIcon() {
+        return icon;
+    }
+}
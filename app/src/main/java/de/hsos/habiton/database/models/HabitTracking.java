@@ -1,23 +1,31 @@
 package de.hsos.habiton.database.models;
 
+import androidx.annotation.NonNull;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.time.LocalDate;
+
 /**
  * Eine Entitätsklasse, die das Tracking einer Gewohnheit in der Datenbank darstellt.
+ * Pro Gewohnheit und Datum existiert höchstens ein Eintrag (eindeutiger Index auf habitID und date).
+ * Das Datum wird als Epoch-Day gespeichert (siehe {@link de.hsos.habiton.database.converters.LocalDateConverter}).
  * @author Finn Garrels
  */
 @Entity(tableName = "habit_tracking_table",
         foreignKeys = @ForeignKey(entity = Habit.class,
                 parentColumns = "id",
                 childColumns = "habitID",
-                onDelete = ForeignKey.CASCADE))
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index(value = {"habitID", "date"}, unique = true))
 public class HabitTracking {
     @PrimaryKey(autoGenerate = true)
     private int trackID;
     private final int habitID;
-    private String date;
+    @NonNull
+    private LocalDate date;
     private boolean status;
 
     /**
@@ -27,7 +35,7 @@ public class HabitTracking {
      * @param date    Das Datum des Trackings.
      * @param status  Der Status des Trackings (erledigt/nicht erledigt).
      */
-    public HabitTracking(int habitID, String date, boolean status) {
+    public HabitTracking(int habitID, @NonNull LocalDate date, boolean status) {
         this.habitID = habitID;
         this.date = date;
         this.status = status;
@@ -47,7 +55,7 @@ public class HabitTracking {
      *
      * @param date Das zu setzende Datum des Trackings.
      */
-    public void setDate(String date) {
+    public void setDate(@NonNull LocalDate date) {
         this.date = date;
     }
 
@@ -83,7 +91,8 @@ public class HabitTracking {
      *
      * @return Das Datum des Trackings.
      */
-    public String getDate() {
+    @NonNull
+    public LocalDate getDate() {
         return date;
     }
 
@@ -0,0 +1,46 @@
+package de.hsos.habiton.database.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Embedded;
+
+/**
+ * Projektion, die eine Gewohnheit zusammen mit ihrem Erledigt-Status an einem bestimmten Tag enthält.
+ * Wird vom Dashboard verwendet, damit Gewohnheiten und Tagesstatus in einer Abfrage geladen werden.
+ * @author Miikka Koensler
+ */
+public class HabitWithStatus {
+    @Embedded
+    @NonNull
+    private final Habit habit;
+    private final boolean status;
+
+    /**
+     * Konstruktor für die HabitWithStatus-Klasse.
+     *
+     * @param habit  Die Gewohnheit inklusive aktuellem und längstem Streak.
+     * @param status Der Status der Gewohnheit am abgefragten Tag (erledigt/nicht erledigt).
+     */
+    public HabitWithStatus(@NonNull Habit habit, boolean status) {
+        this.habit = habit;
+        this.status = status;
+    }
+
+    /**
+     * Gibt die Gewohnheit zurück.
+     *
+     * @return Die Gewohnheit.
+     */
+    @NonNull
+    public Habit getHabit() {
+        return habit;
+    }
+
+    /**
+     * Gibt den Status der Gewohnheit am abgefragten Tag zurück.
+     *
+     * @return true, wenn die Gewohnheit erledigt wurde, sonst false.
+     */
+    public boolean isStatus() {
+        return status;
+    }
+}
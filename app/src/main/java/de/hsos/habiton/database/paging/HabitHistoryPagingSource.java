@@ -0,0 +1,125 @@
+package de.hsos.habiton.database.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import de.hsos.habiton.database.daos.HabitTrackingDao;
+import de.hsos.habiton.database.models.HabitTracking;
+
+/**
+ * Eine PagingSource für die tageweise Historie einer einzelnen Gewohnheit, neueste Tage zuerst.
+ * Die Seiten werden per Keyset über den Index auf (habitID, date) geladen: Der Schlüssel einer Seite ist das Datum,
+ * an dem sie beginnt. Jede Seite kostet damit gleich viel, egal wie weit in der Vergangenheit sie liegt.
+ * Beim ersten Laden wird die Anzahl der Tage davor und danach ermittelt, damit die Liste Platzhalter anzeigen kann.
+ * Ändert sich die Tabelle, muss die Quelle über {@link #invalidate()} invalidiert werden; sie wird dann ab der
+ * aktuellen Position neu geladen.
+ * @author Finn Garrels
+ */
+public class HabitHistoryPagingSource extends ListenableFuturePagingSource<LocalDate, HabitTracking> {
+
+    private final HabitTrackingDao habitTrackingDao;
+    private final int habitId;
+    private final ListeningExecutorService executor;
+
+    /**
+     * Konstruktor für die HabitHistoryPagingSource.
+     *
+     * @param habitTrackingDao Das DAO für die Trackings.
+     * @param habitId          Die ID der Gewohnheit.
+     * @param executor         Der Executor, auf dem die Seiten geladen werden.
+     */
+    public HabitHistoryPagingSource(HabitTrackingDao habitTrackingDao, int habitId, ListeningExecutorService executor) {
+        this.habitTrackingDao = habitTrackingDao;
+        this.habitId = habitId;
+        this.executor = executor;
+    }
+
+    /**
+     * Lädt eine Seite im Hintergrund.
+     *
+     * @param params Die Parameter der Seite.
+     * @return Ein Future mit der geladenen Seite.
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<LocalDate, HabitTracking>> loadFuture(@NonNull LoadParams<LocalDate> params) {
+        return executor.submit(() -> load(params));
+    }
+
+    /**
+     * Lädt eine Seite synchron. Beim Nachladen älterer Tage beginnt die Seite am Schlüssel und läuft in die
+     * Vergangenheit, beim Nachladen neuerer Tage endet sie am Schlüssel.
+     *
+     * @param params Die Parameter der Seite.
+     * @return Die geladene Seite.
+     */
+    private LoadResult<LocalDate, HabitTracking> load(LoadParams<LocalDate> params) {
+        int loadSize = params.getLoadSize();
+        LocalDate key = params.getKey();
+
+        if (params instanceof LoadParams.Prepend) {
+            List<HabitTracking> newer = habitTrackingDao.getTrackingsFrom(habitId, key, loadSize);
+            Collections.reverse(newer);
+            if (newer.isEmpty()) {
+                return new LoadResult.Page<>(newer, null, null);
+            }
+            LocalDate prevKey = newer.size() < loadSize ? null : newest(newer).plusDays(1);
+            return new LoadResult.Page<>(newer, prevKey, oldest(newer).minusDays(1));
+        }
+
+        List<HabitTracking> older = habitTrackingDao.getTrackingsUpTo(habitId,
+                key != null ? key : LocalDate.MAX, loadSize);
+        if (older.isEmpty()) {
+            return params instanceof LoadParams.Refresh
+                    ? new LoadResult.Page<>(older, null, null, 0, 0)
+                    : new LoadResult.Page<>(older, null, null);
+        }
+
+        if (params instanceof LoadParams.Append) {
+            LocalDate nextKey = older.size() < loadSize ? null : oldest(older).minusDays(1);
+            return new LoadResult.Page<>(older, newest(older).plusDays(1), nextKey);
+        }
+
+        int itemsBefore = habitTrackingDao.countTrackingsAfter(habitId, newest(older));
+        int itemsAfter = habitTrackingDao.countTrackingsBefore(habitId, oldest(older));
+        return new LoadResult.Page<>(older,
+                itemsBefore > 0 ? newest(older).plusDays(1) : null,
+                itemsAfter > 0 ? oldest(older).minusDays(1) : null,
+                itemsBefore, itemsAfter);
+    }
+
+    /**
+     * Ermittelt den Schlüssel, ab dem nach einer Invalidierung neu geladen wird: das Datum des Trackings,
+     * das der zuletzt angezeigten Position am nächsten liegt.
+     *
+     * @param state Der aktuelle Zustand der geladenen Seiten.
+     * @return Das Datum oder null, um mit dem neuesten Tag zu beginnen.
+     */
+    @Nullable
+    @Override
+    public LocalDate getRefreshKey(@NonNull PagingState<LocalDate, HabitTracking> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null) {
+            return null;
+        }
+        HabitTracking anchor = state.closestItemToPosition(anchorPosition);
+        return anchor != null ? anchor.getDate() : null;
+    }
+
+    private static LocalDate newest(List<HabitTracking> page) {
+        return page.get(0).getDate();
+    }
+
+    private static LocalDate oldest(List<HabitTracking> page) {
+        return page.get(page.size() - 1).getDate();
+    }
+}
@@ -0,0 +1,101 @@
+package de.hsos.habiton.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Anwendungsweite Executoren, die von allen Repositories und ViewModels gemeinsam genutzt werden.
+ * Schreibzugriffe laufen nacheinander auf einem einzigen Thread, Lesezugriffe auf einem kleinen Pool
+ * entsprechend der Anzahl der Prozessorkerne, Auswertungen auf einem Thread mit niedriger Priorität.
+ * Die Anzahl der Threads bleibt damit unabhängig von der Anzahl der Bildschirme und Worker-Läufe begrenzt.
+ * @author Finn Garrels
+ */
+public class AppExecutors {
+
+    private static AppExecutors instance;
+
+    private final ExecutorService diskWrite;
+    private final ExecutorService diskRead;
+    private final ExecutorService analytics;
+    private final Executor mainThread;
+
+    private AppExecutors() {
+        int readThreads = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+        diskWrite = Executors.newSingleThreadExecutor(threadFactory("habiton-write", Process.THREAD_PRIORITY_BACKGROUND));
+        diskRead = Executors.newFixedThreadPool(readThreads, threadFactory("habiton-read", Process.THREAD_PRIORITY_BACKGROUND));
+        analytics = Executors.newSingleThreadExecutor(threadFactory("habiton-analytics", Process.THREAD_PRIORITY_LOWEST));
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainThread = mainHandler::post;
+    }
+
+    /**
+     * Stellt sicher, dass nur eine Instanz der Executoren existiert.
+     *
+     * @return Die Instanz der Executoren.
+     */
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    /**
+     * Gibt den Executor für Schreibzugriffe zurück. Aufgaben werden in der Reihenfolge ihres Eingangs
+     * nacheinander ausgeführt.
+     *
+     * @return Der Executor für Schreibzugriffe.
+     */
+    public ExecutorService diskWrite() {
+        return diskWrite;
+    }
+
+    /**
+     * Gibt den Executor für Lesezugriffe zurück. Lesezugriffe warten nicht auf laufende Schreibzugriffe.
+     *
+     * @return Der Executor für Lesezugriffe.
+     */
+    public ExecutorService diskRead() {
+        return diskRead;
+    }
+
+    /**
+     * Gibt den Executor für aufwendige Auswertungen mit niedriger Priorität zurück.
+     *
+     * @return Der Executor für Auswertungen.
+     */
+    public ExecutorService analytics() {
+        return analytics;
+    }
+
+    /**
+     * Gibt den Executor für den Main-Thread zurück.
+     *
+     * @return Der Executor für den Main-Thread.
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Erstellt eine ThreadFactory für benannte Threads mit einer bestimmten Priorität.
+     *
+     * @param name     Der Präfix der Thread-Namen.
+     * @param priority Die Android-Thread-Priorität.
+     * @return Die ThreadFactory.
+     */
+    private static ThreadFactory threadFactory(String name, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+}
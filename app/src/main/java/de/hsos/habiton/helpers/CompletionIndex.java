@@ -0,0 +1,488 @@
+package de.hsos.habiton.helpers;
+
+import android.util.SparseArray;
+
+import java.time.LocalDate;
+
+import de.hsos.habiton.database.daos.HabitTrackingDao;
+
+/**
+ * Ein In-Memory-Index über die erledigten Tage jeder Gewohnheit.
+ * Pro Gewohnheit wird ein Bitset mit einem Bit pro Tag ab dem ersten Tracking geführt, darüber ein Fenwick-Baum
+ * (Binary Indexed Tree), sodass die Anzahl erledigter Tage in einem beliebigen Zeitraum in O(log n) bestimmt werden kann.
+ * Streaks werden mit Operationen auf ganzen Wörtern statt durch Iteration über Tracking-Zeilen ermittelt.
+ * Der Index wird beim ersten Zugriff einmalig aus der Tracking-Tabelle aufgebaut und danach beim Umschalten
+ * und Löschen fortgeschrieben. Alle Methoden dürfen nicht auf dem Main-Thread aufgerufen werden.
+ * @author Finn Garrels
+ */
+public class CompletionIndex {
+
+    private static CompletionIndex instance;
+
+    private final HabitTrackingDao habitTrackingDao;
+    private final SparseArray<HabitHistory> histories = new SparseArray<>();
+    private boolean built;
+
+    private CompletionIndex(HabitTrackingDao habitTrackingDao) {
+        this.habitTrackingDao = habitTrackingDao;
+    }
+
+    /**
+     * Stellt sicher, dass nur eine Instanz des Index existiert.
+     *
+     * @param habitTrackingDao Das DAO-Objekt, aus dem der Index aufgebaut wird.
+     * @return Die Instanz des Index.
+     */
+    public static synchronized CompletionIndex getInstance(HabitTrackingDao habitTrackingDao) {
+        if (instance == null) {
+            instance = new CompletionIndex(habitTrackingDao);
+        }
+        return instance;
+    }
+
+    /**
+     * Baut den Index aus allen Trackings auf, falls das noch nicht geschehen ist. Die Trackings werden zeilenweise
+     * über einen Cursor gelesen und nicht als Liste geladen. Da sie nach Datum sortiert ankommen, wächst jedes
+     * Bitset nur nach hinten.
+     */
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        habitTrackingDao.forEachTracking((habitId, epochDay, status) ->
+                historyFor(habitId, epochDay).set(epochDay, status));
+        built = true;
+    }
+
+    /**
+     * Gibt die Historie einer Gewohnheit zurück und legt sie bei Bedarf an.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param day     Ein Tag der Gewohnheit als Epoch-Day, ab dem die Historie beginnt, falls sie neu angelegt wird.
+     * @return Die Historie der Gewohnheit.
+     */
+    private HabitHistory historyFor(int habitId, long day) {
+        HabitHistory history = histories.get(habitId);
+        if (history == null) {
+            history = new HabitHistory(day);
+            histories.put(habitId, history);
+        }
+        return history;
+    }
+
+    /**
+     * Setzt den Status einer Gewohnheit an einem Tag. Das Setzen ist idempotent,
+     * ein bereits gesetzter Status verändert den Index nicht erneut.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum.
+     * @param done    Der neue Status.
+     */
+    public synchronized void setCompleted(int habitId, LocalDate date, boolean done) {
+        if (!built) {
+            // Der Index wird beim ersten Zugriff ohnehin mit dem aktuellen Datenbankstand aufgebaut
+            return;
+        }
+        historyFor(habitId, date.toEpochDay()).set(date.toEpochDay(), done);
+    }
+
+    /**
+     * Entfernt eine Gewohnheit aus dem Index.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     */
+    public synchronized void removeHabit(int habitId) {
+        histories.remove(habitId);
+    }
+
+    /**
+     * Zählt die erledigten Tage einer Gewohnheit in einem Zeitraum (Grenzen inklusive).
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param from    Das erste Datum des Zeitraums.
+     * @param to      Das letzte Datum des Zeitraums.
+     * @return Die Anzahl der erledigten Tage.
+     */
+    public synchronized int countCompleted(int habitId, LocalDate from, LocalDate to) {
+        ensureBuilt();
+        HabitHistory history = histories.get(habitId);
+        return history != null ? history.count(from.toEpochDay(), to.toEpochDay()) : 0;
+    }
+
+    /**
+     * Berechnet die Abschlussrate einer Gewohnheit in einem Zeitraum (Grenzen inklusive).
+     * Erwartet wird eine Erledigung pro Tag des Zeitraums.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param from    Das erste Datum des Zeitraums.
+     * @param to      Das letzte Datum des Zeitraums.
+     * @return Die Abschlussrate in Prozent.
+     */
+    public synchronized double getCompletionRate(int habitId, LocalDate from, LocalDate to) {
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        if (days <= 0) {
+            return 0;
+        }
+        return (double) countCompleted(habitId, from, to) / days * 100;
+    }
+
+    /**
+     * Berechnet die Abschlussrate über alle Gewohnheiten in einem Zeitraum (Grenzen inklusive).
+     * Erwartet wird eine Erledigung pro Gewohnheit und Tag des Zeitraums. Die Anzahl der Gewohnheiten wird
+     * übergeben, weil Gewohnheiten erst nach ihrem ersten Umschalten eine Historie im Index haben.
+     *
+     * @param from       Das erste Datum des Zeitraums.
+     * @param to         Das letzte Datum des Zeitraums.
+     * @param habitCount Die Anzahl aller Gewohnheiten.
+     * @return Die Abschlussrate in Prozent.
+     */
+    public synchronized double getOverallCompletionRate(LocalDate from, LocalDate to, int habitCount) {
+        ensureBuilt();
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        if (days <= 0 || habitCount <= 0) {
+            return 0;
+        }
+        long completed = 0;
+        for (int i = 0; i < histories.size(); i++) {
+            completed += histories.valueAt(i).count(from.toEpochDay(), to.toEpochDay());
+        }
+        return (double) completed / (habitCount * days) * 100;
+    }
+
+    /**
+     * Ermittelt die Streak, die an einem bestimmten Tag endet.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param day     Der letzte Tag der Streak.
+     * @return Die Streak; ihre Länge ist 0, wenn die Gewohnheit an diesem Tag nicht erledigt wurde.
+     */
+    public synchronized Run getRunEndingAt(int habitId, LocalDate day) {
+        ensureBuilt();
+        HabitHistory history = histories.get(habitId);
+        int length = history != null ? history.runLengthEndingAt(day.toEpochDay()) : 0;
+        return new Run(day.minusDays(length - 1), length);
+    }
+
+    /**
+     * Ermittelt die längste Streak einer Gewohnheit. Bei gleich langen Streaks wird die früheste zurückgegeben.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @return Die längste Streak; ihre Länge ist 0, wenn die Gewohnheit nie erledigt wurde.
+     */
+    public synchronized Run getLongestRun(int habitId) {
+        ensureBuilt();
+        HabitHistory history = histories.get(habitId);
+        return history != null ? history.longestRun() : new Run(null, 0);
+    }
+
+    /**
+     * Berechnet die Abschlussraten mehrerer Gewohnheiten in einem Durchlauf, jeweils in O(log n).
+     *
+     * @param habitIds Die IDs der Gewohnheiten.
+     * @param today    Das heutige Datum.
+     * @param days     Die Anzahl der Tage bis einschließlich heute.
+     * @return Die Abschlussraten in Prozent in der Reihenfolge der IDs.
+     */
+    public synchronized double[] getCompletionRates(int[] habitIds, LocalDate today, int days) {
+        ensureBuilt();
+        long todayDay = today.toEpochDay();
+        double[] rates = new double[habitIds.length];
+        for (int i = 0; i < habitIds.length; i++) {
+            HabitHistory history = histories.get(habitIds[i]);
+            if (history != null) {
+                rates[i] = (double) history.count(todayDay - days + 1, todayDay) / days * 100;
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Berechnet für jedes Paar von Gewohnheiten, wie häufig sie am selben Tag erledigt wurden.
+     * Der Wert ist der Jaccard-Index der erledigten Tage im Zeitraum in Prozent: Tage, an denen beide erledigt
+     * wurden, geteilt durch Tage, an denen mindestens eine erledigt wurde. Pro Paar werden nur die Bitset-Wörter
+     * des Zeitraums mit AND/OR verknüpft und mit {@link Long#bitCount(long)} gezählt.
+     *
+     * @param habitIds Die IDs der Gewohnheiten in der gewünschten Reihenfolge.
+     * @param from     Das erste Datum des Zeitraums.
+     * @param to       Das letzte Datum des Zeitraums.
+     * @return Die zeilenweise Matrix der Größe n × n mit Werten von 0 bis 100.
+     */
+    public synchronized int[] getCoCompletionMatrix(int[] habitIds, LocalDate from, LocalDate to) {
+        ensureBuilt();
+        int count = habitIds.length;
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        long[][] windows = new long[count][];
+        for (int i = 0; i < count; i++) {
+            HabitHistory history = histories.get(habitIds[i]);
+            windows[i] = history != null ? history.wordsBetween(fromDay, toDay) : HabitHistory.emptyWords(fromDay, toDay);
+        }
+
+        int[] matrix = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            for (int j = i; j < count; j++) {
+                int both = 0;
+                int either = 0;
+                for (int word = 0; word < windows[i].length; word++) {
+                    both += Long.bitCount(windows[i][word] & windows[j][word]);
+                    either += Long.bitCount(windows[i][word] | windows[j][word]);
+                }
+                int percentage = either == 0 ? 0 : both * 100 / either;
+                matrix[i * count + j] = percentage;
+                matrix[j * count + i] = percentage;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Eine Folge aufeinanderfolgender erledigter Tage.
+     */
+    public static class Run {
+        private final LocalDate start;
+        private final int length;
+
+        Run(LocalDate start, int length) {
+            this.start = length > 0 ? start : null;
+            this.length = length;
+        }
+
+        /**
+         * Gibt den ersten Tag der Streak zurück.
+         *
+         * @return Der erste Tag oder null, wenn die Länge 0 ist.
+         */
+        public LocalDate getStart() {
+            return start;
+        }
+
+        /**
+         * Gibt die Länge der Streak in Tagen zurück.
+         *
+         * @return Die Länge der Streak.
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Die Abschluss-Historie einer Gewohnheit als Bitset mit einem Bit pro Tag, beginnend bei einem auf 64 Tage
+     * ausgerichteten ersten Tag. Über den Wörtern liegt ein Fenwick-Baum mit der Anzahl erledigter Tage pro Wort,
+     * sodass Zählungen in O(log n) mit einem {@link Long#bitCount(long)} für das angebrochene Wort auskommen.
+     * Pro Tag werden damit 1,5 Bit belegt. Die Kapazität wächst bei Bedarf durch Verdopplung.
+     */
+    static class HabitHistory {
+        private long firstDay;
+        private long[] words = new long[1];
+        private int[] tree = new int[2];
+
+        HabitHistory(long day) {
+            this.firstDay = Math.floorDiv(day, 64) * 64;
+        }
+
+        /**
+         * Setzt den Status eines Tages und passt den Baum an, falls sich der Status ändert.
+         *
+         * @param day    Der Tag als Epoch-Day.
+         * @param status Der neue Status.
+         */
+        void set(long day, boolean status) {
+            if (day < firstDay) {
+                long newFirstDay = Math.floorDiv(day, 64) * 64;
+                int shift = (int) ((firstDay - newFirstDay) / 64);
+                resize(words.length + shift, shift);
+                firstDay = newFirstDay;
+            }
+            long index = day - firstDay;
+            int word = (int) (index >>> 6);
+            if (word >= words.length) {
+                resize(Math.max(words.length * 2, word + 1), 0);
+            }
+            long mask = 1L << index;
+            if (((words[word] & mask) != 0) == status) {
+                return;
+            }
+            words[word] ^= mask;
+            int delta = status ? 1 : -1;
+            for (int i = word + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /**
+         * Zählt die erledigten Tage in einem Bereich (Grenzen inklusive).
+         *
+         * @param fromDay Der erste Tag als Epoch-Day.
+         * @param toDay   Der letzte Tag als Epoch-Day.
+         * @return Die Anzahl der erledigten Tage.
+         */
+        int count(long fromDay, long toDay) {
+            return prefix(toDay + 1) - prefix(fromDay);
+        }
+
+        /**
+         * Zählt die erledigten Tage vor einem Tag.
+         *
+         * @param day Der Tag als Epoch-Day (exklusiv).
+         * @return Die Anzahl der erledigten Tage vor diesem Tag.
+         */
+        private int prefix(long day) {
+            long index = day - firstDay;
+            if (index <= 0) {
+                return 0;
+            }
+            if (index >= (long) words.length * 64) {
+                return sumWords(words.length);
+            }
+            int word = (int) (index >>> 6);
+            return sumWords(word) + Long.bitCount(words[word] & ((1L << index) - 1));
+        }
+
+        /**
+         * Summiert die erledigten Tage der ersten Wörter über den Fenwick-Baum.
+         *
+         * @param wordCount Die Anzahl der Wörter.
+         * @return Die Anzahl der erledigten Tage.
+         */
+        private int sumWords(int wordCount) {
+            int sum = 0;
+            for (int i = wordCount; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Zählt die erledigten Tage, die lückenlos an einem Tag enden. Pro Wort wird mit
+         * {@link Long#numberOfLeadingZeros(long)} die Länge des gesetzten Bereichs bestimmt.
+         *
+         * @param day Der letzte Tag als Epoch-Day.
+         * @return Die Länge der Streak.
+         */
+        int runLengthEndingAt(long day) {
+            long index = day - firstDay;
+            if (index < 0 || index >= (long) words.length * 64) {
+                return 0;
+            }
+            int length = 0;
+            int word = (int) (index >>> 6);
+            int bit = (int) (index & 63);
+            while (word >= 0) {
+                // Verschiebt den Tag auf das höchste Bit, die Einsen davor zählen zur Streak
+                int ones = Long.numberOfLeadingZeros(~(words[word] << (63 - bit)));
+                if (ones <= bit) {
+                    return length + ones;
+                }
+                length += bit + 1;
+                word--;
+                bit = 63;
+            }
+            return length;
+        }
+
+        /**
+         * Ermittelt die längste Folge gesetzter Bits. Innerhalb eines Wortes werden ganze Bereiche gleicher Bits
+         * mit {@link Long#numberOfTrailingZeros(long)} übersprungen.
+         *
+         * @return Die längste Streak.
+         */
+        Run longestRun() {
+            int bestLength = 0;
+            long bestStart = 0;
+            int runLength = 0;
+            long runStart = 0;
+
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                int position = 0;
+                while (position < 64) {
+                    long remaining = bits >>> position;
+                    if ((remaining & 1) != 0) {
+                        int ones = Long.numberOfTrailingZeros(~remaining);
+                        if (runLength == 0) {
+                            runStart = firstDay + word * 64L + position;
+                        }
+                        runLength += ones;
+                        if (runLength > bestLength) {
+                            bestLength = runLength;
+                            bestStart = runStart;
+                        }
+                        position += ones;
+                    } else {
+                        runLength = 0;
+                        position += Math.min(Long.numberOfTrailingZeros(remaining), 64 - position);
+                    }
+                }
+            }
+            return new Run(LocalDate.ofEpochDay(bestStart), bestLength);
+        }
+
+        /**
+         * Gibt die Bits eines Zeitraums als eigene Wörter zurück, sodass Bit 0 des ersten Wortes dem ersten Tag
+         * entspricht. Tage außerhalb der Historie sind nicht gesetzt.
+         *
+         * @param fromDay Der erste Tag als Epoch-Day.
+         * @param toDay   Der letzte Tag als Epoch-Day.
+         * @return Die Wörter des Zeitraums.
+         */
+        long[] wordsBetween(long fromDay, long toDay) {
+            long[] window = emptyWords(fromDay, toDay);
+            for (int i = 0; i < window.length; i++) {
+                long start = fromDay + i * 64L - firstDay;
+                int word = (int) Math.floorDiv(start, 64);
+                int bit = (int) Math.floorMod(start, 64);
+                long low = wordAt(word) >>> bit;
+                long high = bit == 0 ? 0 : wordAt(word + 1) << (64 - bit);
+                window[i] = low | high;
+            }
+            int lastBits = (int) ((toDay - fromDay + 1) % 64);
+            if (window.length > 0 && lastBits != 0) {
+                window[window.length - 1] &= (1L << lastBits) - 1;
+            }
+            return window;
+        }
+
+        /**
+         * Legt leere Wörter für einen Zeitraum an.
+         *
+         * @param fromDay Der erste Tag als Epoch-Day.
+         * @param toDay   Der letzte Tag als Epoch-Day.
+         * @return Die leeren Wörter des Zeitraums.
+         */
+        static long[] emptyWords(long fromDay, long toDay) {
+            long days = Math.max(toDay - fromDay + 1, 0);
+            return new long[(int) ((days + 63) / 64)];
+        }
+
+        /**
+         * Gibt ein Wort des Bitsets zurück oder 0 außerhalb der Historie.
+         *
+         * @param word Der Index des Wortes.
+         * @return Das Wort.
+         */
+        private long wordAt(int word) {
+            return word >= 0 && word < words.length ? words[word] : 0;
+        }
+
+        /**
+         * Vergrößert das Bitset und baut den Baum in O(n) neu auf.
+         *
+         * @param wordCount Die neue Anzahl an Wörtern.
+         * @param shift     Die Anzahl der Wörter, um die die bisherigen Werte nach hinten verschoben werden.
+         */
+        private void resize(int wordCount, int shift) {
+            long[] resized = new long[wordCount];
+            System.arraycopy(words, 0, resized, shift, words.length);
+            words = resized;
+            tree = new int[wordCount + 1];
+            for (int i = 1; i <= wordCount; i++) {
+                tree[i] += Long.bitCount(words[i - 1]);
+                int parent = i + (i & -i);
+                if (parent <= wordCount) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+    }
+}
@@ -1,108 +1,106 @@
 package de.hsos.habiton.helpers;
 
+import android.os.CancellationSignal;
+
 import java.time.LocalDate;
-import java.util.List;
 
+import de.hsos.habiton.database.daos.HabitDao;
 import de.hsos.habiton.database.daos.HabitTrackingDao;
-import de.hsos.habiton.database.models.HabitTracking;
 
 /**
  * Hilfsklasse zur Berechnung von Gewinnserien und Abschlussraten von Gewohnheiten.
+ * Der Streak-Zustand (Beginn und Länge der aktuellen und der längsten Streak) wird beim Umschalten und beim
+ * täglichen Wechsel fortgeschrieben, sodass die beste Gewinnserie ohne Durchlauf der Historie gelesen werden kann.
+ * Die vollständige Neuberechnung aus der Historie dient nur noch der Reparatur unvollständiger Zustände.
  */
 public class HabitStreakCalculator {
 
+    private final HabitDao habitDao;
     private final HabitTrackingDao habitTrackingDao;
+    private final CompletionIndex completionIndex;
 
     /**
      * Konstruktor für den HabitStreakCalculator.
      *
+     * @param habitDao         Das DAO-Objekt für die Gewohnheiten.
      * @param habitTrackingDao Das DAO-Objekt für die Gewohnheitsverfolgung.
+     * @param completionIndex  Der Abschluss-Index für die Neuberechnung aus der Historie.
      */
-    public HabitStreakCalculator(HabitTrackingDao habitTrackingDao) {
+    public HabitStreakCalculator(HabitDao habitDao, HabitTrackingDao habitTrackingDao, CompletionIndex completionIndex) {
+        this.habitDao = habitDao;
         this.habitTrackingDao = habitTrackingDao;
+        this.completionIndex = completionIndex;
     }
 
     /**
-     * Berechnet die beste Gewinnserie für eine bestimmte Gewohnheit.
+     * Gibt die beste Gewinnserie für eine bestimmte Gewohnheit oder über alle Gewohnheiten zurück.
+     * Der Wert wird direkt aus dem gespeicherten Streak-Zustand gelesen.
      *
-     * @param habitId Die ID der Gewohnheit.
+     * @param habitId Die ID der Gewohnheit oder null für alle Gewohnheiten.
      * @return Die beste Gewinnserie.
      */
     public int calculateBestStreak(Integer habitId) {
-        List<HabitTracking> trackings;
-        if (habitId == null) {
-            trackings = habitTrackingDao.getAllTrackings();
-        } else {
-            trackings = habitTrackingDao.getTrackingsForHabit(habitId);
-        }
-        return calculateStreakFromTrackings(trackings);
+        Integer bestStreak = habitId == null
+                ? habitDao.getMaxLongestStreakValue()
+                : habitDao.getLongestStreak(habitId);
+        return bestStreak != null ? bestStreak : 0;
     }
 
-    private int calculateStreakFromTrackings(List<HabitTracking> trackings) {
-        int maxStreak = 0;
-        int currentStreak = 0;
-        LocalDate lastDate = null;
-
-        for (HabitTracking tracking : trackings) {
-            LocalDate currentDate = LocalDate.parse(tracking.getDate());
-
-            // Überprüfen, ob es der erste Eintrag ist oder ob das aktuelle Datum direkt auf das letzte Datum folgt
-            if (lastDate == null || currentDate.equals(lastDate.plusDays(1))) {
-                if (tracking.isStatus()) {
-                    currentStreak++;
-                } else {
-                    currentStreak = 0;
-                }
-            } else {
-                maxStreak = Math.max(maxStreak, currentStreak);
-                currentStreak = tracking.isStatus() ? 1 : 0;
-            }
-            lastDate = currentDate;
+    /**
+     * Berechnet den Streak-Zustand aller Gewohnheiten neu, deren Zustand unvollständig ist.
+     * Das ist nur nach einer Migration oder bei inkonsistenten Daten der Fall, sonst wird keine Historie gelesen.
+     *
+     * @param today Das heutige Datum.
+     */
+    public void repairIncompleteStreaks(LocalDate today) {
+        for (Integer habitId : habitDao.getHabitIdsWithIncompleteStreaks()) {
+            recalculateStreaks(habitId, today);
         }
+    }
 
-        return Math.max(maxStreak, currentStreak);
+    /**
+     * Berechnet den Streak-Zustand einer Gewohnheit vollständig aus ihrer Historie und speichert ihn.
+     * Die Historie wird dem Abschluss-Index entnommen, der die Streaks auf Bitset-Ebene bestimmt.
+     * Die aktuelle Streak zählt nur, wenn ihr letzter Tag heute oder gestern ist.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param today   Das heutige Datum.
+     */
+    public void recalculateStreaks(int habitId, LocalDate today) {
+        CompletionIndex.Run current = completionIndex.getRunEndingAt(habitId, today);
+        if (current.getLength() == 0) {
+            current = completionIndex.getRunEndingAt(habitId, today.minusDays(1));
+        }
+        CompletionIndex.Run best = completionIndex.getLongestRun(habitId);
+        habitDao.updateStreakState(habitId, current.getLength(), current.getStart(), best.getLength(), best.getStart());
     }
 
     /**
      * Berechnet die Abschlussrate für eine Gewohnheit über einen bestimmten Zeitraum.
+     * Die Zählung erfolgt vollständig in der Datenbank.
      *
      * @param habitId Die ID der Gewohnheit.
      * @param days    Die Anzahl der Tage für die Berechnung.
+     * @param signal  Das Signal, über das die Abfrage abgebrochen werden kann.
      * @return Die Abschlussrate für die Gewohnheit.
      */
-    public double calculateCompletionRateForHabit(int habitId, int days) {
+    public double calculateCompletionRateForHabit(int habitId, int days, CancellationSignal signal) {
         LocalDate endDate = LocalDate.now();
         LocalDate startDate = endDate.minusDays(days - 1);
-        List<HabitTracking> trackings = habitTrackingDao.getTrackingsForHabit(habitId);
-
-        int completedDays = (int) trackings.stream()
-                .filter(tracking -> {
-                    LocalDate trackingDate = LocalDate.parse(tracking.getDate());
-                    return !trackingDate.isBefore(startDate) && !trackingDate.isAfter(endDate) && tracking.isStatus();
-                })
-                .count();
-
-        return (double) completedDays / days * 100;
+        return habitTrackingDao.getCompletionCountForHabit(habitId, startDate, endDate, signal).getPercentage();
     }
 
     /**
      * Berechnet die Gesamtabschlussrate über einen bestimmten Zeitraum.
+     * Die Zählung erfolgt vollständig in der Datenbank.
      *
-     * @param days Die Anzahl der Tage für die Berechnung.
+     * @param days   Die Anzahl der Tage für die Berechnung.
+     * @param signal Das Signal, über das die Abfrage abgebrochen werden kann.
      * @return Die Gesamtabschlussrate.
      */
-    public double calculateOverallCompletionRate(int days) {
+    public double calculateOverallCompletionRate(int days, CancellationSignal signal) {
         LocalDate endDate = LocalDate.now();
         LocalDate startDate = endDate.minusDays(days - 1);
-        List<HabitTracking> allTrackings = habitTrackingDao.getAllTrackings();
-        int totalCompleted = (int) allTrackings.stream()
-                .filter(tracking -> {
-                    LocalDate trackingDate = LocalDate.parse(tracking.getDate());
-                    return !trackingDate.isBefore(startDate) && !trackingDate.isAfter(endDate) && tracking.isStatus();
-                })
-                .count();
-
-        int totalHabits = habitTrackingDao.getAllHabitIds().size();
-        return (double) totalCompleted / (totalHabits * days) * 100;
+        return habitTrackingDao.getOverallCompletionCount(startDate, endDate, signal).getPercentage();
     }
 }
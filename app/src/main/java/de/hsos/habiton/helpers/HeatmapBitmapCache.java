@@ -0,0 +1,187 @@
+package de.hsos.habiton.helpers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cache für vorgerenderte Heatmap-Bitmaps abgeschlossener Tage.
+ * Die Bitmaps werden im Speicher in einem LRU-Cache und zusätzlich als PNG im Cache-Verzeichnis der App gehalten,
+ * sodass vergangene Zeiträume auch nach einem Neustart nur noch kopiert statt Kachel für Kachel gezeichnet werden.
+ * Schlüssel bestehen aus einer Gruppe (Zeitraum und Gewohnheit) und dem Layout. Zu jeder Bitmap werden die Werte
+ * gespeichert, aus denen sie gerendert wurde; eine Bitmap wird nur zurückgegeben, wenn diese Werte exakt mit den
+ * angefragten übereinstimmen. Pro Gruppe wird auf dem Datenträger nur der zuletzt gerenderte Stand behalten.
+ * @author Finn Garrels
+ */
+public class HeatmapBitmapCache {
+
+    private static final int MAX_DISK_ENTRIES = 48;
+
+    private static HeatmapBitmapCache instance;
+
+    private final LruCache<String, Entry> memoryCache;
+    private final File directory;
+    private final AppExecutors executors;
+
+    private HeatmapBitmapCache(Context context) {
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memoryCache = new LruCache<String, Entry>(maxKilobytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bitmap.getByteCount() / 1024;
+            }
+        };
+        directory = new File(context.getCacheDir(), "heatmaps");
+        executors = AppExecutors.getInstance();
+    }
+
+    /**
+     * Stellt sicher, dass nur eine Instanz des Caches existiert.
+     *
+     * @param context Ein beliebiger Kontext der Anwendung.
+     * @return Die Instanz des Caches.
+     */
+    public static synchronized HeatmapBitmapCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new HeatmapBitmapCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Gibt eine Bitmap aus dem Speicher-Cache zurück, ohne auf den Datenträger zuzugreifen.
+     *
+     * @param key   Der Schlüssel der Bitmap.
+     * @param cells Die Werte, aus denen die Bitmap gerendert sein muss.
+     * @return Die Bitmap oder null, wenn für diese Werte keine im Speicher liegt.
+     */
+    public Bitmap getFromMemory(String key, int[] cells) {
+        Entry entry = memoryCache.get(key);
+        return entry != null && Arrays.equals(entry.cells, cells) ? entry.bitmap : null;
+    }
+
+    /**
+     * Lädt eine Bitmap im Hintergrund vom Datenträger oder rendert sie, falls dort keine für dieselben Werte vorliegt.
+     * Das Ergebnis wird in beiden Caches abgelegt und auf dem Main-Thread übergeben.
+     *
+     * @param group    Die Gruppe des Schlüssels. Ältere Stände derselben Gruppe werden vom Datenträger gelöscht.
+     * @param key      Der vollständige Schlüssel der Bitmap.
+     * @param cells    Die Werte, aus denen die Bitmap gerendert wird.
+     * @param renderer Rendert die Bitmap, wenn sie nicht auf dem Datenträger liegt.
+     * @param callback Erhält die Bitmap auf dem Main-Thread.
+     */
+    public void load(String group, String key, int[] cells, Supplier<Bitmap> renderer, Consumer<Bitmap> callback) {
+        executors.analytics().execute(() -> {
+            Bitmap bitmap = readFromDisk(key, cells);
+            if (bitmap == null) {
+                bitmap = renderer.get();
+                writeToDisk(group, key, cells, bitmap);
+            }
+            memoryCache.put(key, new Entry(bitmap, cells));
+            Bitmap result = bitmap;
+            executors.mainThread().execute(() -> callback.accept(result));
+        });
+    }
+
+    /**
+     * Liest eine Bitmap vom Datenträger, sofern die daneben gespeicherten Werte mit den angefragten übereinstimmen.
+     *
+     * @param key   Der Schlüssel der Bitmap.
+     * @param cells Die Werte, aus denen die Bitmap gerendert sein muss.
+     * @return Die Bitmap oder null, wenn keine lesbare Datei für diese Werte existiert.
+     */
+    private Bitmap readFromDisk(String key, int[] cells) {
+        File file = new File(directory, key + ".png");
+        File cellsFile = new File(directory, key + ".cells");
+        if (!file.isFile() || !cellsFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cellsFile)))) {
+            if (in.readInt() != cells.length) {
+                return null;
+            }
+            for (int cell : cells) {
+                if (in.readInt() != cell) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return BitmapFactory.decodeFile(file.getPath());
+    }
+
+    /**
+     * Schreibt eine Bitmap als PNG zusammen mit ihren Werten auf den Datenträger und entfernt ältere Stände derselben
+     * Gruppe sowie die ältesten Dateien, wenn mehr als {@link #MAX_DISK_ENTRIES} Einträge vorhanden sind.
+     *
+     * @param group  Die Gruppe des Schlüssels.
+     * @param key    Der Schlüssel der Bitmap.
+     * @param cells  Die Werte, aus denen die Bitmap gerendert wurde.
+     * @param bitmap Die Bitmap.
+     */
+    private void writeToDisk(String group, String key, int[] cells, Bitmap bitmap) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File[] outdated = directory.listFiles((dir, name) -> name.startsWith(group + "_"));
+        if (outdated != null) {
+            for (File file : outdated) {
+                file.delete();
+            }
+        }
+
+        File file = new File(directory, key + ".png");
+        File cellsFile = new File(directory, key + ".cells");
+        try (OutputStream out = new FileOutputStream(file);
+             DataOutputStream cellsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cellsFile)))) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            cellsOut.writeInt(cells.length);
+            for (int cell : cells) {
+                cellsOut.writeInt(cell);
+            }
+        } catch (IOException e) {
+            // Der Datenträger-Cache ist optional, die Bitmap bleibt im Speicher-Cache
+            file.delete();
+            cellsFile.delete();
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files != null && files.length > MAX_DISK_ENTRIES) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+                String name = files[i].getName();
+                files[i].delete();
+                new File(directory, name.substring(0, name.length() - ".png".length()) + ".cells").delete();
+            }
+        }
+    }
+
+    /**
+     * Eine Bitmap zusammen mit den Werten, aus denen sie gerendert wurde.
+     */
+    private static final class Entry {
+        private final Bitmap bitmap;
+        private final int[] cells;
+
+        private Entry(Bitmap bitmap, int[] cells) {
+            this.bitmap = bitmap;
+            this.cells = cells;
+        }
+    }
+}
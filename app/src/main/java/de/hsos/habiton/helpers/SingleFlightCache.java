@@ -0,0 +1,186 @@
+package de.hsos.habiton.helpers;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Ein Cache für aufwendige Berechnungen, der gleichzeitige Anfragen mit demselben Schlüssel zusammenfasst.
+ * Solange eine Berechnung läuft, erhalten weitere Anfragen dieselbe LiveData, statt eine zweite Berechnung zu starten.
+ * Fertige Ergebnisse werden gespeichert, bis {@link #invalidate()} aufgerufen wird, etwa nach einem Schreibzugriff.
+ * Mit {@link #cancelPending()} werden alle noch laufenden Berechnungen abgebrochen, ihre Ergebnisse werden verworfen.
+ * Optional wird die Anzahl der gespeicherten Ergebnisse begrenzt; dann wird das am längsten nicht genutzte verdrängt.
+ * Schlägt eine Berechnung fehl, wird der Fehler protokolliert und die nächste Anfrage startet sie erneut.
+ * @author Finn Garrels
+ */
+public class SingleFlightCache {
+
+    private static final String TAG = "SingleFlightCache";
+
+    /**
+     * Eine abbrechbare Berechnung.
+     *
+     * @param <T> Der Typ des Ergebnisses.
+     */
+    public interface Computation<T> {
+        /**
+         * Führt die Berechnung aus.
+         *
+         * @param cancellationSignal Das Signal, über das laufende Datenbankabfragen abgebrochen werden.
+         * @return Das Ergebnis der Berechnung.
+         */
+        T compute(CancellationSignal cancellationSignal);
+    }
+
+    private final Map<String, Flight<?>> inFlight = new HashMap<>();
+    private final Map<String, Object> results;
+    private long dataGeneration;
+    private long requestGeneration;
+
+    /**
+     * Erstellt einen Cache ohne Begrenzung der gespeicherten Ergebnisse.
+     */
+    public SingleFlightCache() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Erstellt einen Cache, der höchstens die angegebene Anzahl an Ergebnissen speichert.
+     *
+     * @param maxResults Die maximale Anzahl gespeicherter Ergebnisse.
+     */
+    public SingleFlightCache(int maxResults) {
+        results = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxResults;
+            }
+        };
+    }
+
+    /**
+     * Gibt das Ergebnis einer Berechnung zurück. Ein gespeichertes Ergebnis wird sofort geliefert,
+     * eine laufende Berechnung mit demselben Schlüssel wird geteilt, sonst wird die Berechnung gestartet.
+     *
+     * @param key         Der Schlüssel, der die Berechnung mit allen Parametern eindeutig beschreibt.
+     * @param executor    Der Executor, auf dem die Berechnung ausgeführt wird.
+     * @param computation Die Berechnung.
+     * @param <T>         Der Typ des Ergebnisses.
+     * @return Eine LiveData mit dem Ergebnis. Wird die Berechnung abgebrochen, erhält sie keinen Wert.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> LiveData<T> get(String key, ExecutorService executor, Computation<T> computation) {
+        if (results.containsKey(key)) {
+            return new MutableLiveData<>((T) results.get(key));
+        }
+        Flight<T> pending = (Flight<T>) inFlight.get(key);
+        if (pending != null) {
+            return pending.result;
+        }
+
+        Flight<T> flight = new Flight<>(dataGeneration, requestGeneration);
+        inFlight.put(key, flight);
+        flight.future = executor.submit(() -> run(key, flight, computation));
+        return flight.result;
+    }
+
+    /**
+     * Verwirft alle gespeicherten Ergebnisse. Laufende Berechnungen werden nicht mehr geteilt,
+     * sodass neue Anfragen den aktuellen Datenstand berechnen.
+     */
+    public synchronized void invalidate() {
+        dataGeneration++;
+        results.clear();
+        inFlight.clear();
+    }
+
+    /**
+     * Bricht alle laufenden und wartenden Berechnungen ab. Wartende Berechnungen werden aus der Warteschlange
+     * entfernt, laufende Datenbankabfragen über ihr CancellationSignal unterbrochen. Ergebnisse, die danach
+     * noch fertig werden, werden weder gespeichert noch ausgeliefert.
+     */
+    public synchronized void cancelPending() {
+        requestGeneration++;
+        for (Flight<?> flight : inFlight.values()) {
+            flight.cancellationSignal.cancel();
+            if (flight.future != null) {
+                flight.future.cancel(false);
+            }
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Führt eine Berechnung aus und liefert das Ergebnis aus, sofern sie nicht abgebrochen wurde.
+     * Die Berechnung wird in jedem Fall aus den laufenden Berechnungen entfernt, auch wenn sie fehlschlägt.
+     *
+     * @param key         Der Schlüssel der Berechnung.
+     * @param flight      Die laufende Berechnung.
+     * @param computation Die Berechnung.
+     * @param <T>         Der Typ des Ergebnisses.
+     */
+    private <T> void run(String key, Flight<T> flight, Computation<T> computation) {
+        T value = null;
+        boolean completed = false;
+        try {
+            value = computation.compute(flight.cancellationSignal);
+            completed = true;
+        } catch (OperationCanceledException e) {
+            // Abgebrochene Berechnungen liefern kein Ergebnis
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Computation failed: " + key, e);
+        } finally {
+            finish(key, flight, value, completed);
+        }
+    }
+
+    /**
+     * Schließt eine Berechnung ab: Sie wird aus den laufenden Berechnungen entfernt und ihr Ergebnis,
+     * sofern vorhanden und noch aktuell, gespeichert und ausgeliefert.
+     *
+     * @param key       Der Schlüssel der Berechnung.
+     * @param flight    Die laufende Berechnung.
+     * @param value     Das Ergebnis.
+     * @param completed true, wenn die Berechnung ein Ergebnis geliefert hat.
+     * @param <T>       Der Typ des Ergebnisses.
+     */
+    private synchronized <T> void finish(String key, Flight<T> flight, T value, boolean completed) {
+        // Nach einer Invalidierung kann unter demselben Schlüssel bereits eine neuere Berechnung laufen
+        inFlight.remove(key, flight);
+        if (!completed || flight.requestGeneration != requestGeneration) {
+            return;
+        }
+        // Ergebnisse, die vor einer Invalidierung begonnen wurden, werden ausgeliefert, aber nicht gespeichert
+        if (flight.dataGeneration == dataGeneration) {
+            results.put(key, value);
+        }
+        flight.result.postValue(value);
+    }
+
+    /**
+     * Eine laufende Berechnung mit den Generationen, zu denen sie gestartet wurde.
+     *
+     * @param <T> Der Typ des Ergebnisses.
+     */
+    private static class Flight<T> {
+        private final MutableLiveData<T> result = new MutableLiveData<>();
+        private final CancellationSignal cancellationSignal = new CancellationSignal();
+        private final long dataGeneration;
+        private final long requestGeneration;
+        private Future<?> future;
+
+        private Flight(long dataGeneration, long requestGeneration) {
+            this.dataGeneration = dataGeneration;
+            this.requestGeneration = requestGeneration;
+        }
+    }
+}
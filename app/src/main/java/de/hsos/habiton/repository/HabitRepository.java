@@ -1,45 +1,152 @@
 package de.hsos.habiton.repository;
 
 import android.app.Application;
+import android.util.SparseArray;
 
+import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.room.InvalidationTracker;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import de.hsos.habiton.database.HabitDatabase;
 import de.hsos.habiton.database.daos.HabitDao;
 import de.hsos.habiton.database.daos.HabitTrackingDao;
 import de.hsos.habiton.database.models.Habit;
+import de.hsos.habiton.database.models.HabitStats;
+import de.hsos.habiton.database.models.HabitSummary;
 import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.database.models.HabitWithStatus;
+import de.hsos.habiton.helpers.AppExecutors;
+import de.hsos.habiton.helpers.CompletionIndex;
 import de.hsos.habiton.helpers.HabitStreakCalculator;
+import de.hsos.habiton.helpers.SingleFlightCache;
 
 /**
  * Ein Repository zur Verwaltung von Gewohnheitsdaten und zugehörigen Verfolgungsdaten.
+ * Es existiert nur eine Instanz pro Prozess. Die Gewohnheiten werden nach ID und Name im Speicher gehalten
+ * und bei Einfügen, Aktualisieren und Löschen abgeglichen, sodass Namensprüfungen ohne Datenbankzugriff
+ * beantwortet werden können. Streaks werden direkt in der Datenbank fortgeschrieben und sind im Cache
+ * nicht aktuell. Auswertungen werden pro Gewohnheit und Zeitraum nur einmal gleichzeitig berechnet und bis zum
+ * nächsten Schreibzugriff auf die Gewohnheits- oder Verfolgungstabelle zwischengespeichert.
  * @author Miikka Koesnler, Finn Garrels
  */
 public class HabitRepository {
+    private static HabitRepository instance;
+
     private final HabitDao habitDao;
     private final HabitTrackingDao habitTrackingDao;
     private final HabitStreakCalculator streakCalculator;
-    private final ExecutorService executorService;
+    private final CompletionIndex completionIndex;
+    private final AppExecutors executors;
+    private final Map<Integer, Habit> habitsById = new ConcurrentHashMap<>();
+    private final Map<String, Habit> habitsByName = new ConcurrentHashMap<>();
+    private volatile boolean cacheLoaded;
+    private final SingleFlightCache analyticsCache = new SingleFlightCache();
 
     /**
      * Konstruktor für das HabitRepository.
      *
      * @param application Die Anwendungsinstanz.
      */
-    public HabitRepository(Application application) {
+    private HabitRepository(Application application) {
         HabitDatabase database = HabitDatabase.getInstance(application);
         habitDao = database.habitDao();
         habitTrackingDao = database.habitTrackingDao();
-        this.streakCalculator = new HabitStreakCalculator(habitTrackingDao);
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.completionIndex = CompletionIndex.getInstance(habitTrackingDao);
+        this.streakCalculator = new HabitStreakCalculator(habitDao, habitTrackingDao, completionIndex);
+        this.executors = AppExecutors.getInstance();
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("habit_tracking_table", "habit_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                // Über den Schreib-Executor, damit der Abschluss-Index nach einem Umschalten bereits aktualisiert ist
+                executors.diskWrite().execute(analyticsCache::invalidate);
+            }
+        });
+    }
+
+    /**
+     * Stellt sicher, dass nur eine Instanz des Repositories existiert.
+     *
+     * @param application Die Anwendungsinstanz.
+     * @return Die Instanz des Repositories.
+     */
+    public static synchronized HabitRepository getInstance(Application application) {
+        if (instance == null) {
+            instance = new HabitRepository(application);
+        }
+        return instance;
+    }
+
+    /**
+     * Lädt alle Gewohnheiten einmalig in den Cache. Darf nicht auf dem Main-Thread aufgerufen werden.
+     * Schreibzugriffe auf den Cache warten, bis das Laden abgeschlossen ist. So kann der geladene Stand eine
+     * Änderung, die nach dem Lesen der Tabelle geschrieben wurde, nicht mehr überschreiben.
+     */
+    private synchronized void ensureCacheLoaded() {
+        if (cacheLoaded) {
+            return;
+        }
+        for (Habit habit : habitDao.getAllHabits()) {
+            cacheHabit(habit);
+        }
+        cacheLoaded = true;
+    }
+
+    /**
+     * Legt eine Gewohnheit im Cache ab und entfernt einen eventuell veralteten Namenseintrag.
+     * Die Gewohnheit darf danach nicht mehr verändert werden.
+     *
+     * @param habit Die Gewohnheit.
+     */
+    private synchronized void cacheHabit(Habit habit) {
+        Habit previous = habitsById.put(habit.getId(), habit);
+        if (previous != null && previous.getName() != null) {
+            habitsByName.remove(previous.getName(), previous);
+        }
+        if (habit.getName() != null) {
+            habitsByName.put(habit.getName(), habit);
+        }
+    }
+
+    /**
+     * Entfernt eine Gewohnheit aus dem Cache.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     */
+    private synchronized void evictHabit(int habitId) {
+        Habit previous = habitsById.remove(habitId);
+        if (previous != null && previous.getName() != null) {
+            habitsByName.remove(previous.getName(), previous);
+        }
+    }
+
+    /**
+     * Liefert einen Wert aus dem Cache. Ist der Cache bereits geladen, wird der Wert sofort gesetzt,
+     * andernfalls wird der Cache im Hintergrund geladen.
+     *
+     * @param lookup Die Abfrage auf dem Cache.
+     * @param <T>    Der Typ des Wertes.
+     * @return Eine LiveData mit dem Wert.
+     */
+    private <T> LiveData<T> fromCache(Supplier<T> lookup) {
+        if (cacheLoaded) {
+            return new MutableLiveData<>(lookup.get());
+        }
+        MutableLiveData<T> result = new MutableLiveData<>();
+        executors.diskRead().execute(() -> {
+            ensureCacheLoaded();
+            result.postValue(lookup.get());
+        });
+        return result;
     }
 
     /**
@@ -48,23 +155,36 @@ public class HabitRepository {
      * @param habit Die hinzuzufügende Gewohnheit.
      */
     public void insert(Habit habit) {
-        executorService.execute(() -> {
+        executors.diskWrite().execute(() -> {
             long habitId = habitDao.insert(habit);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            String currentDate = dateFormat.format(new Date());
-
-            HabitTracking habitTracking = new HabitTracking((int) habitId, currentDate, false);
+            if (habitId == -1) {
+                return;
+            }
+            HabitTracking habitTracking = new HabitTracking((int) habitId, LocalDate.now(), false);
             habitTrackingDao.insert(habitTracking);
+            // Eine Kopie wird abgelegt, damit der Cache nicht von Änderungen am Objekt des Aufrufers abhängt
+            Habit cached = new Habit(habit.getName(), habit.getDescription(), habit.getIcon(), habit.getStreak());
+            cached.setId((int) habitId);
+            cacheHabit(cached);
         });
     }
 
     /**
-     * Aktualisiert eine vorhandene Gewohnheit.
+     * Aktualisiert Name, Beschreibung und Icon einer vorhandenen Gewohnheit. Der Streak-Zustand wird nicht verändert.
      *
-     * @param habit Die zu aktualisierende Gewohnheit.
+     * @param habitId     Die ID der Gewohnheit.
+     * @param name        Der neue Name.
+     * @param description Die neue Beschreibung.
+     * @param icon        Das neue Icon.
      */
-    public void update(Habit habit) {
-        executorService.execute(() -> habitDao.update(habit));
+    public void update(int habitId, String name, String description, String icon) {
+        executors.diskWrite().execute(() -> {
+            if (habitDao.updateDetails(habitId, name, description, icon) > 0) {
+                Habit habit = new Habit(name, description, icon, 0);
+                habit.setId(habitId);
+                cacheHabit(habit);
+            }
+        });
     }
 
     /**
@@ -73,86 +193,77 @@ public class HabitRepository {
      * @param habit Die zu löschende Gewohnheit.
      */
     public void delete(Habit habit) {
-        executorService.execute(() -> {
+        executors.diskWrite().execute(() -> {
             long habitId = habit.getId();
             habitDao.delete(habit);
             if (habitTrackingDao != null) {
                 habitTrackingDao.deleteAllTrackingsForHabit(habitId);
             }
+            completionIndex.removeHabit((int) habitId);
+            evictHabit((int) habitId);
         });
     }
 
     /**
-     * Ruft alle Gewohnheiten ab.
+     * Ruft alle Gewohnheiten zusammen mit ihrem heutigen Status ab.
      *
-     * @return Eine LiveData-Liste aller Gewohnheiten.
+     * @return Eine LiveData-Liste aller Gewohnheiten mit Tagesstatus.
      */
-    public LiveData<List<Habit>> getAllHabits() {
-        String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
-        return habitDao.getAllHabits(currentDate);
+    public LiveData<List<HabitWithStatus>> getAllHabitsWithStatus() {
+        return habitDao.getAllHabitsWithStatus(LocalDate.now());
     }
 
     /**
-     * Ruft alle Gewohnheitstitel ab.
+     * Ruft ID, Name und Icon aller Gewohnheiten in einer Abfrage ab.
      *
-     * @return Eine LiveData-Liste aller Gewohnheitstitel.
+     * @return Eine LiveData-Liste der Stammdaten aller Gewohnheiten.
      */
-    public LiveData<List<String>> getHabitTitles() {
-        return habitDao.getAllHabitTitles();
+    public LiveData<List<HabitSummary>> getHabitSummaries() {
+        return habitDao.getHabitSummaries();
     }
 
     /**
-     * Ruft das Symbol für eine Gewohnheit anhand des Namens ab.
+     * Gibt die beste Streak einer Gewohnheit oder über alle Gewohnheiten zurück.
      *
-     * @param name Der Name der Gewohnheit.
-     * @return Eine LiveData-Zeichenfolge des Symbols der Gewohnheit.
+     * @param habitId Die ID der Gewohnheit oder null für alle Gewohnheiten.
+     * @return Die beste Streak der Gewohnheit.
      */
-    public LiveData<String> getIconByName(String name) {
-        MutableLiveData<String> iconLiveData = new MutableLiveData<>();
-
-        executorService.execute(() -> {
-            String icon = habitDao.getIconByName(name);
-            iconLiveData.postValue(icon);
-        });
-
-        return iconLiveData;
+    public int calculateBestStreak(Integer habitId) {
+        return streakCalculator.calculateBestStreak(habitId);
     }
 
     /**
-     * Aktualisiert die längste Streak einer Gewohnheit.
+     * Berechnet den Streak-Zustand aller Gewohnheiten mit unvollständigem Zustand synchron aus der Historie neu.
+     * Darf nicht auf dem Main-Thread aufgerufen werden.
      *
-     * @param habitId Die ID der Gewohnheit.
+     * @param today Das heutige Datum.
      */
-    public void updateLongestStreakForHabit(int habitId) {
-        int streak = habitDao.getHabitById(habitId).getStreak();
-        if (habitDao.getHabitById(habitId).getLongestStreak() < streak) {
-            habitDao.updateLongestStreak(habitId, streak);
-        }
+    public void repairIncompleteStreaks(LocalDate today) {
+        streakCalculator.repairIncompleteStreaks(today);
     }
 
     /**
-     * Berechnet die beste Streak einer Gewohnheit.
+     * Überprüft, ob eine Gewohnheit existiert.
      *
-     * @param habitId Die ID der Gewohnheit.
-     * @return Die beste Streak der Gewohnheit.
+     * @param name Der Name der Gewohnheit.
+     * @return Eine LiveData-Boolean, die angibt, ob die Gewohnheit existiert oder nicht.
      */
-    public int calculateBestStreak(Integer habitId) {
-        return streakCalculator.calculateBestStreak(habitId);
+    public LiveData<Boolean> doesHabitExist(String name) {
+        return fromCache(() -> name != null && habitsByName.containsKey(name));
     }
 
     /**
-     * Überprüft, ob eine Gewohnheit existiert.
+     * Überprüft, ob eine andere als die angegebene Gewohnheit einen Namen bereits verwendet.
      *
-     * @param name Der Name der Gewohnheit.
-     * @return Eine LiveData-Boolean, die angibt, ob die Gewohnheit existiert oder nicht.
+     * @param name    Der Name der Gewohnheit.
+     * @param habitId Die ID der Gewohnheit, die bei der Prüfung ausgenommen wird.
+     * @return Eine LiveData-Boolean, die angibt, ob eine andere Gewohnheit den Namen verwendet.
      */
-    public LiveData<Boolean> doesHabitExist(String name) {
-        MutableLiveData<Boolean> result = new MutableLiveData<>();
-        executorService.execute(() -> {
-            boolean exists = habitDao.doesHabitExist(name);
-            result.postValue(exists);
+    public LiveData<Boolean> doesOtherHabitExist(String name, int habitId) {
+        return fromCache(() -> {
+            Habit habit = name != null ? habitsByName.get(name) : null;
+            return habit != null && habit.getId() != habitId;
         });
-        return result;
     }
 
     /**
@@ -164,6 +275,16 @@ public class HabitRepository {
         return habitDao.getMaxLongestStreak();
     }
 
+    /**
+     * Ruft die längste Streak einer Gewohnheit ab.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @return Eine LiveData-Integer der längsten Streak, die bei jeder Änderung aktualisiert wird.
+     */
+    public LiveData<Integer> getLongestStreak(int habitId) {
+        return habitDao.getLongestStreak(habitId);
+    }
+
     /**
      * Berechnet die Abschlussrate für eine Gewohnheit über einen bestimmten Zeitraum.
      *
@@ -172,54 +293,96 @@ public class HabitRepository {
      * @return Eine LiveData-Double der Abschlussrate der Gewohnheit.
      */
     public LiveData<Double> calculateCompletionRateForHabit(int habitId, int days) {
-        MutableLiveData<Double> result = new MutableLiveData<>();
-
-        executorService.execute(() -> {
-            double rate = streakCalculator.calculateCompletionRateForHabit(habitId, days);
-            result.postValue(rate);
-        });
+        String key = "rate:" + habitId + ":" + LocalDate.now() + ":" + days;
+        return analyticsCache.get(key, executors.analytics(),
+                signal -> streakCalculator.calculateCompletionRateForHabit(habitId, days, signal));
+    }
 
-        return result;
+    /**
+     * Berechnet die Abschlussrate einer Gewohnheit zwischen zwei beliebigen Tagen (Grenzen inklusive).
+     * Die Berechnung erfolgt über den Abschluss-Index in O(log n), unabhängig von der Länge der Historie.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param from    Das erste Datum des Zeitraums.
+     * @param to      Das letzte Datum des Zeitraums.
+     * @return Eine LiveData-Double der Abschlussrate der Gewohnheit.
+     */
+    public LiveData<Double> getCompletionRateBetween(int habitId, LocalDate from, LocalDate to) {
+        return analyticsCache.get("rateBetween:" + habitId + ":" + from + ":" + to, executors.analytics(),
+                signal -> completionIndex.getCompletionRate(habitId, from, to));
     }
 
     /**
-     * Berechnet die Gesamtabschlussrate über einen bestimmten Zeitraum.
+     * Berechnet die Gesamtabschlussrate zwischen zwei beliebigen Tagen (Grenzen inklusive).
+     * Die Berechnung erfolgt über den Abschluss-Index in O(h · log n) für h Gewohnheiten.
      *
-     * @param days Die Anzahl der Tage, über die die Abschlussrate berechnet werden soll.
+     * @param from Das erste Datum des Zeitraums.
+     * @param to   Das letzte Datum des Zeitraums.
      * @return Eine LiveData-Double der Gesamtabschlussrate.
      */
-    public LiveData<Double> calculateOverallCompletionRate(int days) {
-        MutableLiveData<Double> result = new MutableLiveData<>();
-
-        executorService.execute(() -> {
-            double overallRate = streakCalculator.calculateOverallCompletionRate(days);
-            result.postValue(overallRate);
-        });
-
-        return result;
+    public LiveData<Double> getOverallCompletionRateBetween(LocalDate from, LocalDate to) {
+        return analyticsCache.get("overallBetween:" + from + ":" + to, executors.analytics(),
+                signal -> completionIndex.getOverallCompletionRate(from, to, habitDao.getHabitCount()));
     }
 
     /**
-     * Erstellt Verfolgungen für alle Gewohnheiten.
+     * Stellt aktuelle Streak, längste Streak und Abschlussrate für mehrere Gewohnheiten zusammen.
+     * Die Streaks werden direkt aus den gespeicherten Spalten der Gewohnheiten übernommen; nur die Abschlussraten
+     * werden in einem Durchlauf über den Abschluss-Index berechnet.
+     *
+     * @param habits Die Gewohnheiten mit ihren gespeicherten Streaks.
+     * @param days   Die Anzahl der Tage bis einschließlich heute für die Abschlussrate.
+     * @return Eine LiveData mit den Kennzahlen nach Gewohnheits-ID.
      */
-    public void createTrackingForAllHabits() {
-        executorService.execute(() -> {
-            List<Habit> allHabits = habitDao.getAllHabits();
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
-            for (Habit habit : allHabits) {
-                HabitTracking newTracking = new HabitTracking(habit.getId(), currentDate, false);
-                habitTrackingDao.insert(newTracking);
+    public LiveData<SparseArray<HabitStats>> getHabitStats(List<HabitWithStatus> habits, int days) {
+        LocalDate today = LocalDate.now();
+        int[] habitIds = new int[habits.size()];
+        for (int i = 0; i < habitIds.length; i++) {
+            habitIds[i] = habits.get(i).getHabit().getId();
+        }
+        String key = "rates:" + Arrays.toString(habitIds) + ":" + today + ":" + days;
+        LiveData<double[]> rates = analyticsCache.get(key, executors.analytics(),
+                signal -> completionIndex.getCompletionRates(habitIds, today, days));
+        return Transformations.map(rates, completionRates -> {
+            SparseArray<HabitStats> stats = new SparseArray<>(habitIds.length);
+            for (int i = 0; i < habitIds.length; i++) {
+                Habit habit = habits.get(i).getHabit();
+                stats.put(habit.getId(), new HabitStats(habit.getStreak(), habit.getLongestStreak(), completionRates[i]));
             }
+            return stats;
         });
     }
 
     /**
-     * Ruft die ID einer Gewohnheit anhand des Titels ab.
+     * Berechnet paarweise, wie häufig Gewohnheiten in einem Zeitraum am selben Tag erledigt wurden.
      *
-     * @param title Der Titel der Gewohnheit.
-     * @return Die ID der Gewohnheit.
+     * @param habitIds Die IDs der Gewohnheiten in der gewünschten Reihenfolge.
+     * @param from     Das erste Datum des Zeitraums.
+     * @param to       Das letzte Datum des Zeitraums.
+     * @return Eine LiveData mit der zeilenweisen n × n Matrix in Prozent.
      */
-    public int getHabitIdFromTitle(String title) {
-        return habitDao.getHabitIdByTitle(title);
+    public LiveData<int[]> getCoCompletionMatrix(int[] habitIds, LocalDate from, LocalDate to) {
+        String key = "coCompletion:" + Arrays.toString(habitIds) + ":" + from + ":" + to;
+        return analyticsCache.get(key, executors.analytics(), signal -> completionIndex.getCoCompletionMatrix(habitIds, from, to));
     }
+
+    /**
+     * Berechnet die Gesamtabschlussrate über einen bestimmten Zeitraum.
+     *
+     * @param days Die Anzahl der Tage, über die die Abschlussrate berechnet werden soll.
+     * @return Eine LiveData-Double der Gesamtabschlussrate.
+     */
+    public LiveData<Double> calculateOverallCompletionRate(int days) {
+        String key = "overall:" + LocalDate.now() + ":" + days;
+        return analyticsCache.get(key, executors.analytics(), signal -> streakCalculator.calculateOverallCompletionRate(days, signal));
+    }
+
+    /**
+     * Bricht alle noch nicht ausgelieferten Auswertungen ab, etwa wenn eine neue Auswahl getroffen wurde.
+     * Deren Ergebnisse werden verworfen und überschreiben keine neueren Ergebnisse.
+     */
+    public void cancelPendingAnalytics() {
+        analyticsCache.cancelPending();
+    }
+
 }
@@ -2,110 +2,201 @@ package de.hsos.habiton.repository;
 
 import android.app.Application;
 
+import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+import androidx.room.InvalidationTracker;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import de.hsos.habiton.database.HabitDatabase;
-import de.hsos.habiton.database.daos.HabitDao;
 import de.hsos.habiton.database.daos.HabitTrackingDao;
+import de.hsos.habiton.database.models.DailyCompletion;
 import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.database.paging.HabitHistoryPagingSource;
+import de.hsos.habiton.helpers.AppExecutors;
+import de.hsos.habiton.helpers.CompletionIndex;
+import de.hsos.habiton.helpers.SingleFlightCache;
+import kotlin.Unit;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 
 /**
  * Ein Repository zur Verwaltung von Gewohnheitsverfolgungsdaten.
+ * Die Tageswerte abgeschlossener Zeiträume werden in einer begrenzten Anzahl zwischengespeichert, sodass beim
+ * Blättern durch die Historie benachbarte Zeiträume vorab geladen und weit entfernte wieder verdrängt werden.
+ * Die tageweise Historie einer Gewohnheit wird seitenweise geladen, sodass auch sehr lange Historien mit
+ * konstantem Speicherbedarf durchblättert werden können.
  * @author Miikka Koesnler, Finn Garrels
  */
 public class HabitTrackingRepository {
-    private final HabitDao habitDao;
+    private static final int MAX_CACHED_PERIODS = 12;
+    private static final int HISTORY_PAGE_SIZE = 60;
+    private static final int HISTORY_MAX_LOADED_DAYS = 5 * HISTORY_PAGE_SIZE;
+
+    private static HabitTrackingRepository instance;
+
     private final HabitTrackingDao habitTrackingDao;
-    private final ExecutorService executorService;
+    private final CompletionIndex completionIndex;
+    private final AppExecutors executors;
+    private final SingleFlightCache periodCache = new SingleFlightCache(MAX_CACHED_PERIODS);
+    private final InvalidationTracker invalidationTracker;
+    private final ListeningExecutorService historyExecutor;
 
     /**
      * Konstruktor für das HabitTrackingRepository.
      *
      * @param application Die Anwendungsinstanz.
      */
-    public HabitTrackingRepository(Application application) {
+    private HabitTrackingRepository(Application application) {
         HabitDatabase database = HabitDatabase.getInstance(application);
-        habitDao = database.habitDao();
         habitTrackingDao = database.habitTrackingDao();
-        this.executorService = Executors.newSingleThreadExecutor();
+        completionIndex = CompletionIndex.getInstance(habitTrackingDao);
+        this.executors = AppExecutors.getInstance();
+        historyExecutor = MoreExecutors.listeningDecorator(executors.diskRead());
+        invalidationTracker = database.getInvalidationTracker();
+        invalidationTracker.addObserver(new InvalidationTracker.Observer("habit_tracking_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                periodCache.invalidate();
+            }
+        });
     }
 
     /**
-     * Ruft die Gesamtzahl der Gewohnheiten für ein bestimmtes Datum ab.
+     * Stellt sicher, dass nur eine Instanz des Repositories existiert.
      *
-     * @param date Das Datum, für das die Gesamtzahl der Gewohnheiten abgerufen werden soll.
-     * @return Eine LiveData-Integer der Gesamtzahl der Gewohnheiten für das angegebene Datum.
+     * @param application Die Anwendungsinstanz.
+     * @return Die Instanz des Repositories.
      */
-    public LiveData<Integer> getTotalHabitsForDate(String date) {
-        return habitTrackingDao.countHabitsForDate(date);
+    public static synchronized HabitTrackingRepository getInstance(Application application) {
+        if (instance == null) {
+            instance = new HabitTrackingRepository(application);
+        }
+        return instance;
     }
 
     /**
-     * Setzt die Streaks zurück, wenn gestern keine Gewohnheit abgeschlossen wurde.
+     * Holt die prozentuale Erfüllung aller Gewohnheiten für jeden Tag eines Datumsbereichs.
+     * Das Ergebnis ist nach Tagen indiziert: Index 0 entspricht {@code from}, der letzte Index {@code to}.
+     * Tage ohne Trackings (z. B. zukünftige Tage) haben den Wert 0. Enthält der Bereich den heutigen Tag,
+     * wird er fortlaufend beobachtet; abgeschlossene Bereiche werden einmalig geladen und zwischengespeichert.
+     *
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
+     * @return Eine LiveData mit den Prozentwerten (0 bis 100) pro Tag.
      */
-    public void resetStreakIfNotCompletedYesterday() {
-        LocalDate yesterday = LocalDate.now().minusDays(1);
-        executorService.execute(() -> {
-            List<Integer> habitIdsNotCompletedYesterday = habitTrackingDao.findHabitsNotDoneOnDate(yesterday.toString());
-            for (int habitId : habitIdsNotCompletedYesterday) {
-                habitDao.resetStreak(habitId);
-            }
-        });
+    public LiveData<int[]> getCompletionPercentagesBetween(LocalDate from, LocalDate to) {
+        if (!to.isBefore(LocalDate.now())) {
+            return Transformations.map(habitTrackingDao.getDailyCompletionsBetween(from, to),
+                    dailyCompletions -> toPercentages(dailyCompletions, from, to));
+        }
+        return periodCache.get(from + ":" + to, executors.diskRead(),
+                signal -> toPercentages(habitTrackingDao.getDailyCompletionListBetween(from, to), from, to));
     }
 
     /**
-     * Ruft die Anzahl der abgeschlossenen Gewohnheiten für ein bestimmtes Datum ab.
+     * Lädt die Tageswerte eines abgeschlossenen Bereichs im Hintergrund in den Cache, damit er beim
+     * Blättern ohne Wartezeit angezeigt werden kann. Bereiche, die den heutigen Tag enthalten, werden ignoriert.
      *
-     * @param date Das Datum, für das die Anzahl der abgeschlossenen Gewohnheiten abgerufen werden soll.
-     * @return Eine LiveData-Integer der Anzahl der abgeschlossenen Gewohnheiten für das angegebene Datum.
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
      */
-    public LiveData<Integer> getCountOfCompletedHabitsOnDate(String date) {
-        return habitTrackingDao.getCountOfCompletedHabitsOnDate(date);
+    public void prefetchCompletionPercentages(LocalDate from, LocalDate to) {
+        if (to.isBefore(LocalDate.now())) {
+            getCompletionPercentagesBetween(from, to);
+        }
     }
 
     /**
-     * Ändert den Status einer Gewohnheit für ein bestimmtes Datum.
+     * Holt die tageweise Historie einer Gewohnheit, neueste Tage zuerst. Es werden immer nur Seiten von
+     * {@value #HISTORY_PAGE_SIZE} Tagen rund um die sichtbare Position im Hintergrund geladen; nicht geladene Tage
+     * erscheinen als Platzhalter und weit entfernte Seiten werden wieder verworfen.
      *
      * @param habitId Die ID der Gewohnheit.
-     * @param date    Das Datum, für das der Status geändert werden soll.
+     * @return Eine LiveData mit den Seiten der Historie.
+     */
+    public LiveData<PagingData<HabitTracking>> getHabitHistory(int habitId) {
+        PagingConfig config = new PagingConfig(HISTORY_PAGE_SIZE, HISTORY_PAGE_SIZE, true,
+                2 * HISTORY_PAGE_SIZE, HISTORY_MAX_LOADED_DAYS);
+        return PagingLiveData.getLiveData(new Pager<>(config, () -> createHistorySource(habitId)));
+    }
+
+    /**
+     * Erstellt eine PagingSource für die Historie einer Gewohnheit, die sich bei Änderungen der Tracking-Tabelle
+     * selbst invalidiert. Der Observer wird mit der Invalidierung wieder entfernt.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @return Die PagingSource.
      */
-    public void toggleHabitDoneStatus(int habitId, String date) {
-        executorService.execute(() -> {
-            Integer currentStatusInteger = habitTrackingDao.getHabitStatusForCurrentDate(habitId, date);
-
-            if (currentStatusInteger != null) {
-                int currentStatus = currentStatusInteger;
-
-                if (currentStatus == 0) {
-                    habitDao.incrementStreak(habitId);
-                    int currentStreak = habitDao.getStreakForHabit(habitId);
-                    if (currentStreak > habitDao.getMaxLongestStreak(habitId)) {
-                        habitDao.updateLongestStreak(habitId, currentStreak);
-                    }
-                } else {
-                    habitDao.decrementStreak(habitId);
-                }
-
-                HabitTracking tracking = habitTrackingDao.getTrackingForHabitAndDate(habitId, date);
-                if (tracking != null) {
-                    habitTrackingDao.updateIsDone(!tracking.isStatus(), habitId, date);
-                }
+    private HabitHistoryPagingSource createHistorySource(int habitId) {
+        HabitHistoryPagingSource source = new HabitHistoryPagingSource(habitTrackingDao, habitId, historyExecutor);
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer("habit_tracking_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                source.invalidate();
             }
+        };
+        invalidationTracker.addObserver(observer);
+        source.registerInvalidatedCallback(() -> {
+            invalidationTracker.removeObserver(observer);
+            return Unit.INSTANCE;
         });
+        return source;
     }
 
     /**
-     * Ruft alle Gewohnheitsverfolgungen für ein bestimmtes Datum ab.
+     * Rechnet die Tageswerte in Prozentwerte pro Tag des Bereichs um.
      *
-     * @param date Das Datum, für das die Gewohnheitsverfolgungen abgerufen werden sollen.
-     * @return Eine LiveData-Liste aller Gewohnheitsverfolgungen für das angegebene Datum.
+     * @param dailyCompletions Die Tageswerte, sortiert nach Datum.
+     * @param from             Das erste Datum des Bereichs.
+     * @param to               Das letzte Datum des Bereichs.
+     * @return Die Prozentwerte (0 bis 100) pro Tag.
      */
-    public LiveData<List<HabitTracking>> getHabitTrackingsForDate(String date) {
-        return habitTrackingDao.getHabitTrackingsForDate(date);
+    private static int[] toPercentages(List<DailyCompletion> dailyCompletions, LocalDate from, LocalDate to) {
+        int[] percentages = new int[(int) ChronoUnit.DAYS.between(from, to) + 1];
+        long firstDay = from.toEpochDay();
+        for (DailyCompletion day : dailyCompletions) {
+            if (day.getTotal() > 0) {
+                percentages[(int) (day.getDate() - firstDay)] = day.getCompleted() * 100 / day.getTotal();
+            }
+        }
+        return percentages;
+    }
+
+    /**
+     * Führt den täglichen Wechsel synchron aus: Trägt verpasste Tage nach, setzt die Streaks zurück, die seit dem
+     * letzten Wechsel nicht erfüllt wurden, und legt die Trackings für den neuen Tag an.
+     * Mehrfache Aufrufe am selben Tag ändern nichts. Darf nicht auf dem Main-Thread aufgerufen werden.
+     *
+     * @param today Das heutige Datum.
+     */
+    public void performDailyRollover(LocalDate today) {
+        habitTrackingDao.performDailyRollover(today);
+    }
+
+    /**
+     * Ändert den Status einer Gewohnheit für ein bestimmtes Datum.
+     * Status, Streak und längster Streak werden atomar in einer Transaktion aktualisiert,
+     * anschließend wird der Abschluss-Index fortgeschrieben.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @param date    Das Datum, für das der Status geändert werden soll.
+     */
+    public void toggleHabitDoneStatus(int habitId, LocalDate date) {
+        executors.diskWrite().execute(() -> {
+            Boolean done = habitTrackingDao.toggleStatus(habitId, date);
+            if (done != null) {
+                completionIndex.setCompleted(habitId, date, done);
+            }
+        });
     }
 }
@@ -1,31 +1,53 @@
 package de.hsos.habiton.viewModels;
 
 import android.app.Application;
-import android.os.Handler;
-import android.os.Looper;
+import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
+import androidx.core.util.Pair;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Consumer;
+import java.util.Objects;
 
-import de.hsos.habiton.database.models.Habit;
+import de.hsos.habiton.database.models.HabitStats;
+import de.hsos.habiton.database.models.HabitSummary;
+import de.hsos.habiton.database.models.HabitWithStatus;
 import de.hsos.habiton.repository.HabitRepository;
 import de.hsos.habiton.repository.HabitTrackingRepository;
 
 
 /**
  * ViewModel für die Analytics-Funktionalität. Verwaltet Daten und Geschäftslogik für die Analyse von Habit-Daten.
+ * Die Auswahl (Habit, Zeitraum, angezeigte Periode und Heatmap-Bereich) wird hier gehalten. Jede Anzeige hat
+ * genau eine LiveData, deren Quelle bei einer Änderung der Auswahl per switchMap ausgetauscht wird. Die Anzahl
+ * der Observer bleibt dadurch unabhängig davon, wie oft der Nutzer Zeitraum oder Habit wechselt.
  * @author Finn Garrels
  */
 public class AnalyticsViewModel extends AndroidViewModel {
     private final HabitRepository habitRepository;
     private final HabitTrackingRepository habitTrackingRepository;
-    private final ExecutorService executorService;
+
+    private final MutableLiveData<Integer> selectedHabitId = new MutableLiveData<>(null);
+    private final MutableLiveData<Integer> windowDays = new MutableLiveData<>(7);
+    private final MutableLiveData<Pair<LocalDate, LocalDate>> heatmapRange = new MutableLiveData<>();
+    private int periodOffset;
+
+    private final LiveData<List<HabitWithStatus>> habits;
+    private final LiveData<List<HabitSummary>> habitSummaries;
+    private final LiveData<Double> completionRate;
+    private final LiveData<Integer> bestStreak;
+    private final LiveData<SparseArray<HabitStats>> habitStats;
+    private final LiveData<CoCompletionValues> coCompletionMatrix;
+    private final LiveData<HeatmapValues> heatmapPercentages;
 
     /**
      * Konstruktor für das AnalyticsViewModel.
@@ -34,124 +56,284 @@ public class AnalyticsViewModel extends AndroidViewModel {
      */
     public AnalyticsViewModel(Application application) {
         super(application);
-        habitRepository = new HabitRepository(application);
-        habitTrackingRepository = new HabitTrackingRepository(application);
-        executorService = Executors.newSingleThreadExecutor();
+        habitRepository = HabitRepository.getInstance(application);
+        habitTrackingRepository = HabitTrackingRepository.getInstance(application);
+
+        habits = habitRepository.getAllHabitsWithStatus();
+        habitSummaries = habitRepository.getHabitSummaries();
+
+        // Jede Änderung der Habits, etwa nach einem Umschalten, löst eine Neuberechnung mit aktuellen Daten aus
+        MediatorLiveData<Selection> selection = new MediatorLiveData<>();
+        selection.addSource(selectedHabitId, id -> selection.setValue(currentSelection()));
+        selection.addSource(windowDays, days -> selection.setValue(currentSelection()));
+        selection.addSource(habits, list -> selection.setValue(currentSelection()));
+
+        completionRate = Transformations.switchMap(selection, s -> s.habitId == null
+                ? habitRepository.calculateOverallCompletionRate(s.days)
+                : habitRepository.calculateCompletionRateForHabit(s.habitId, s.days));
+        habitStats = Transformations.switchMap(selection,
+                s -> habitRepository.getHabitStats(s.habits, s.days));
+        coCompletionMatrix = Transformations.switchMap(selection, s -> {
+            // Nach ID sortiert, damit Zeilen und Spalten beim Umschalten eines Habits nicht springen
+            List<HabitWithStatus> ordered = new ArrayList<>(s.habits);
+            Collections.sort(ordered, Comparator.comparingInt(h -> h.getHabit().getId()));
+            LocalDate today = LocalDate.now();
+            return Transformations.map(
+                    habitRepository.getCoCompletionMatrix(toHabitIds(ordered), today.minusDays(s.days - 1), today),
+                    matrix -> new CoCompletionValues(ordered, matrix));
+        });
+        bestStreak = Transformations.switchMap(selectedHabitId, id -> id == null
+                ? habitRepository.getMaxLongestStreak()
+                : habitRepository.getLongestStreak(id));
+        heatmapPercentages = Transformations.switchMap(heatmapRange, range -> Transformations.map(
+                habitTrackingRepository.getCompletionPercentagesBetween(range.first, range.second),
+                percentages -> new HeatmapValues(range.first, range.second, percentages)));
     }
 
     /**
-     * Holt die Anzahl der an einem bestimmten Tag abgeschlossenen Habits.
+     * Wählt einen Habit aus, auf den sich Abschlussrate und bester Streak beziehen.
+     * Ändert sich die Auswahl, werden die noch laufenden Auswertungen der bisherigen Auswahl abgebrochen.
      *
-     * @param date Das Datum, für das die Anzahl der Habits ermittelt werden soll.
-     * @return LiveData mit der Anzahl der Habits.
+     * @param habitId Die ID des Habits oder null für alle Habits.
      */
-    public LiveData<Integer> getNumberOfHabitsForDay(String date) {
-        return habitTrackingRepository.getCountOfCompletedHabitsOnDate(date);
+    public void selectHabit(@Nullable Integer habitId) {
+        if (!Objects.equals(selectedHabitId.getValue(), habitId)) {
+            habitRepository.cancelPendingAnalytics();
+            selectedHabitId.setValue(habitId);
+        }
     }
 
     /**
-     * Holt die Gesamtanzahl der Habits für ein bestimmtes Datum.
+     * Legt den Zeitraum fest, über den Abschlussraten und Kennzahlen berechnet werden.
+     * Ändert sich der Zeitraum, werden die noch laufenden Auswertungen des bisherigen Zeitraums abgebrochen.
      *
-     * @param date Das Datum, für das die Gesamtanzahl der Habits ermittelt werden soll.
-     * @return LiveData mit der Gesamtanzahl der Habits.
+     * @param days Die Anzahl der Tage bis einschließlich heute.
      */
-    public LiveData<Integer> getTotalHabitsForDate(String date) {
-        return habitTrackingRepository.getTotalHabitsForDate(date);
+    public void setWindowDays(int days) {
+        if (!Objects.equals(windowDays.getValue(), days)) {
+            habitRepository.cancelPendingAnalytics();
+            windowDays.setValue(days);
+        }
     }
 
     /**
-     * Holt die Titel aller Habits.
+     * Legt den Datumsbereich fest, der in der Heatmap angezeigt wird.
      *
-     * @return LiveData mit einer Liste der Habit-Titel.
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
      */
-    public LiveData<List<String>> getHabitTitles() {
-        return habitRepository.getHabitTitles();
+    public void setHeatmapRange(LocalDate from, LocalDate to) {
+        Pair<LocalDate, LocalDate> range = Pair.create(from, to);
+        if (!range.equals(heatmapRange.getValue())) {
+            heatmapRange.setValue(range);
+        }
     }
 
     /**
-     * Berechnet den besten Streak für einen bestimmten Habit.
+     * Lädt einen benachbarten Heatmap-Bereich im Hintergrund vor, damit das Blättern ohne Wartezeit möglich ist.
      *
-     * @param habitId Die ID des Habits, für den der beste Streak berechnet werden soll.
-     * @return LiveData mit dem besten Streak.
+     * @param from Das erste Datum des Bereichs.
+     * @param to   Das letzte Datum des Bereichs.
      */
-    public LiveData<Integer> calculateBestStreak(Integer habitId) {
-        MutableLiveData<Integer> bestStreakLiveData = new MutableLiveData<>();
-        executorService.execute(() -> {
-            int bestStreak = habitRepository.calculateBestStreak(habitId);
-            bestStreakLiveData.postValue(bestStreak);
-        });
-        return bestStreakLiveData;
+    public void prefetchHeatmapRange(LocalDate from, LocalDate to) {
+        habitTrackingRepository.prefetchCompletionPercentages(from, to);
     }
 
     /**
-     * Holt die ID eines Habits anhand seines Titels.
+     * Gibt den angezeigten Zeitraum relativ zum aktuellen zurück.
      *
-     * @param title    Der Titel des Habits.
-     * @param callback Ein Consumer, der die Habit-ID verarbeitet.
+     * @return 0 für den aktuellen Zeitraum, -1 für den vorherigen usw.
      */
-    public void getHabitIdFromTitle(String title, Consumer<Integer> callback) {
-        executorService.execute(() -> {
-            int habitId = habitRepository.getHabitIdFromTitle(title);
-            new Handler(Looper.getMainLooper()).post(() -> callback.accept(habitId));
-        });
+    public int getPeriodOffset() {
+        return periodOffset;
     }
 
     /**
-     * Holt das Icon eines Habits anhand seines Namens.
+     * Legt den angezeigten Zeitraum relativ zum aktuellen fest.
      *
-     * @param name Der Name des Habits.
-     * @return LiveData mit dem Icon des Habits.
+     * @param periodOffset 0 für den aktuellen Zeitraum, -1 für den vorherigen usw.
      */
-    public LiveData<String> getIconByName(String name) {
-        return habitRepository.getIconByName(name);
+    public void setPeriodOffset(int periodOffset) {
+        this.periodOffset = periodOffset;
     }
 
     /**
-     * Berechnet die Abschlussrate eines Habits über einen bestimmten Zeitraum.
+     * Gibt die Abschlussrate für die aktuelle Auswahl zurück.
      *
-     * @param habitId Die ID des Habits.
-     * @param days    Die Anzahl der Tage für die Berechnung.
      * @return LiveData mit der Abschlussrate.
      */
-    public LiveData<Double> getCompletionRateForHabit(int habitId, int days) {
-        return habitRepository.calculateCompletionRateForHabit(habitId, days);
+    public LiveData<Double> getCompletionRate() {
+        return completionRate;
+    }
+
+    /**
+     * Gibt den besten Streak des ausgewählten Habits oder über alle Habits zurück.
+     *
+     * @return LiveData mit dem besten Streak.
+     */
+    public LiveData<Integer> getBestStreak() {
+        return bestStreak;
+    }
+
+    /**
+     * Gibt aktuelle Streak, längste Streak und Abschlussrate aller Habits für den ausgewählten Zeitraum zurück.
+     *
+     * @return LiveData mit den Kennzahlen nach Habit-ID.
+     */
+    public LiveData<SparseArray<HabitStats>> getHabitStats() {
+        return habitStats;
+    }
+
+    /**
+     * Gibt zurück, wie häufig die Habits im ausgewählten Zeitraum am selben Tag erledigt wurden.
+     * Zeilen und Spalten sind nach Habit-ID sortiert und bleiben dadurch unabhängig vom heutigen Status stabil.
+     *
+     * @return LiveData mit der zeilenweisen n × n Matrix in Prozent und den Habits in Reihenfolge der Matrix.
+     */
+    public LiveData<CoCompletionValues> getCoCompletionMatrix() {
+        return coCompletionMatrix;
+    }
+
+    /**
+     * Gibt die prozentuale Erfüllung aller Habits für jeden Tag des Heatmap-Bereichs zurück.
+     *
+     * @return LiveData mit den Prozentwerten (0 bis 100) pro Tag und dem Bereich, zu dem sie gehören.
+     */
+    public LiveData<HeatmapValues> getHeatmapPercentages() {
+        return heatmapPercentages;
+    }
+
+    /**
+     * Ermittelt die aktuelle Auswahl aus Habit, Zeitraum und Habit-Liste.
+     *
+     * @return Die aktuelle Auswahl.
+     */
+    private Selection currentSelection() {
+        List<HabitWithStatus> list = habits.getValue();
+        return new Selection(selectedHabitId.getValue(), Objects.requireNonNull(windowDays.getValue()),
+                list != null ? list : Collections.emptyList());
     }
 
     /**
-     * Berechnet die Gesamtabschlussrate aller Habits über einen bestimmten Zeitraum.
+     * Ermittelt die IDs der angegebenen Habits in ihrer Reihenfolge.
      *
-     * @param days Die Anzahl der Tage für die Berechnung.
-     * @return LiveData mit der Gesamtabschlussrate.
+     * @param habits Die Habits.
+     * @return Die IDs der Habits.
      */
-    public LiveData<Double> getOverallCompletionRate(int days) {
-        return habitRepository.calculateOverallCompletionRate(days);
+    private static int[] toHabitIds(List<HabitWithStatus> habits) {
+        int[] habitIds = new int[habits.size()];
+        for (int i = 0; i < habitIds.length; i++) {
+            habitIds[i] = habits.get(i).getHabit().getId();
+        }
+        return habitIds;
     }
 
     /**
-     * Holt den maximalen längsten Streak aller Habits.
+     * Holt ID, Name und Icon aller Habits mit einer einzigen Abfrage.
      *
-     * @return LiveData mit dem maximalen längsten Streak.
+     * @return LiveData mit einer Liste der Habit-Stammdaten.
      */
-    public LiveData<Integer> getMaxLongestStreak() {
-        return habitRepository.getMaxLongestStreak();
+    public LiveData<List<HabitSummary>> getHabitSummaries() {
+        return habitSummaries;
     }
 
     /**
-     * Holt alle Habits.
+     * Holt alle Habits zusammen mit ihrem heutigen Status.
      *
-     * @return LiveData-Liste aller Habits.
+     * @return LiveData-Liste aller Habits mit Tagesstatus.
      */
-    public LiveData<List<Habit>> getHabits() {
-        return habitRepository.getAllHabits();
+    public LiveData<List<HabitWithStatus>> getHabits() {
+        return habits;
     }
 
     /**
-     * Wird aufgerufen, wenn das ViewModel nicht mehr benötigt wird und zerstört wird.
-     * Schließt den ExecutorService, um Ressourcen freizugeben.
+     * Bricht beim Schließen des Bildschirms alle Auswertungen ab, deren Ergebnisse nicht mehr benötigt werden.
      */
     @Override
     protected void onCleared() {
         super.onCleared();
-        executorService.shutdown();
+        habitRepository.cancelPendingAnalytics();
+    }
+
+    /**
+     * Die aktuelle Auswahl, aus der die Auswertungen berechnet werden.
+     */
+    private static final class Selection {
+        private final Integer habitId;
+        private final int days;
+        private final List<HabitWithStatus> habits;
+
+        private Selection(Integer habitId, int days, List<HabitWithStatus> habits) {
+            this.habitId = habitId;
+            this.days = days;
+            this.habits = habits;
+        }
+    }
+
+    /**
+     * Die Prozentwerte eines Heatmap-Bereichs zusammen mit dem Bereich, damit beim Blättern keine Werte
+     * eines anderen Zeitraums angezeigt werden.
+     */
+    public static final class HeatmapValues {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final int[] percentages;
+
+        private HeatmapValues(LocalDate from, LocalDate to, int[] percentages) {
+            this.from = from;
+            this.to = to;
+            this.percentages = percentages;
+        }
+
+        /**
+         * Prüft, ob die Werte zu einem bestimmten Bereich gehören.
+         *
+         * @param from Das erste Datum des Bereichs.
+         * @param to   Das letzte Datum des Bereichs.
+         * @return true, wenn die Werte genau diesen Bereich abdecken.
+         */
+        public boolean isFor(LocalDate from, LocalDate to) {
+            return this.from.equals(from) && this.to.equals(to);
+        }
+
+        /**
+         * Gibt die Prozentwerte zurück.
+         *
+         * @return Die Prozentwerte (0 bis 100) pro Tag des Bereichs.
+         */
+        public int[] getPercentages() {
+            return percentages;
+        }
+    }
+
+    /**
+     * Die Matrix der gemeinsam erledigten Habits zusammen mit den Habits, zu denen ihre Zeilen und Spalten gehören.
+     */
+    public static final class CoCompletionValues {
+        private final List<HabitWithStatus> habits;
+        private final int[] matrix;
+
+        private CoCompletionValues(List<HabitWithStatus> habits, int[] matrix) {
+            this.habits = habits;
+            this.matrix = matrix;
+        }
+
+        /**
+         * Gibt die Habits in der Reihenfolge der Zeilen und Spalten zurück.
+         *
+         * @return Die Habits, sortiert nach ID.
+         */
+        public List<HabitWithStatus> getHabits() {
+            return habits;
+        }
+
+        /**
+         * Gibt die Matrix zurück.
+         *
+         * @return Die zeilenweise n × n Matrix in Prozent.
+         */
+        public int[] getMatrix() {
+            return matrix;
+        }
     }
 }
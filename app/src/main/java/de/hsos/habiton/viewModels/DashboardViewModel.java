@@ -7,15 +7,11 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import de.hsos.habiton.database.models.Habit;
-import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.database.models.HabitWithStatus;
 import de.hsos.habiton.repository.HabitRepository;
 import de.hsos.habiton.repository.HabitTrackingRepository;
 
@@ -28,8 +24,6 @@ public class DashboardViewModel extends AndroidViewModel {
     private final HabitTrackingRepository habitTrackingRepository;
     private final MutableLiveData<String> toastMessage = new MutableLiveData<>();
 
-    private final ExecutorService executorService;
-
     /**
      * Konstruktor für das DashboardViewModel.
      *
@@ -37,9 +31,8 @@ public class DashboardViewModel extends AndroidViewModel {
      */
     public DashboardViewModel(@NonNull Application application) {
         super(application);
-        habitRepository = new HabitRepository(application);
-        habitTrackingRepository = new HabitTrackingRepository(application);
-        executorService = Executors.newSingleThreadExecutor();
+        habitRepository = HabitRepository.getInstance(application);
+        habitTrackingRepository = HabitTrackingRepository.getInstance(application);
     }
 
     /**
@@ -68,6 +61,17 @@ public class DashboardViewModel extends AndroidViewModel {
         return habitRepository.doesHabitExist(name);
     }
 
+    /**
+     * Überprüft, ob ein anderer als der angegebene Habit einen Namen bereits verwendet.
+     *
+     * @param name    Der zu überprüfende Name.
+     * @param habitId Die ID des Habits, der bei der Prüfung ausgenommen wird.
+     * @return LiveData, die angibt, ob ein anderer Habit den Namen verwendet.
+     */
+    public LiveData<Boolean> doesOtherHabitExist(String name, int habitId) {
+        return habitRepository.doesOtherHabitExist(name, habitId);
+    }
+
     /**
      * Überprüft, ob der eingegebene Name und die Beschreibung gültig sind.
      *
@@ -85,10 +89,7 @@ public class DashboardViewModel extends AndroidViewModel {
      * @param habitId Die ID des Habits.
      */
     public void toggleHabitDoneStatus(int habitId) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        String currentDate = dateFormat.format(new Date());
-        habitTrackingRepository.toggleHabitDoneStatus(habitId, currentDate);
-        updateLongestStreakForHabit(habitId);
+        habitTrackingRepository.toggleHabitDoneStatus(habitId, LocalDate.now());
     }
 
     // Methoden für Habit Trackings und prozentuale Erfüllung hier implementieren
@@ -100,12 +101,9 @@ public class DashboardViewModel extends AndroidViewModel {
      * @param name Der neue Name des Habits.
      * @param description Die neue Beschreibung des Habits.
      * @param icon Das neue Icon des Habits.
-     * @param streak Der neue Streak des Habits.
      */
-    public void updateHabit(int habitId, String name, String description, String icon, int streak) {
-        Habit habitToUpdate = new Habit(name, description, icon, streak);
-        habitToUpdate.setId(habitId);
-        habitRepository.update(habitToUpdate);
+    public void updateHabit(int habitId, String name, String description, String icon) {
+        habitRepository.update(habitId, name, description, icon);
     }
 
     /**
@@ -118,40 +116,11 @@ public class DashboardViewModel extends AndroidViewModel {
     }
 
     /**
-     * Holt alle Habits.
-     *
-     * @return LiveData-Liste aller Habits.
-     */
-    public LiveData<List<Habit>> getAllHabits() {
-        return habitRepository.getAllHabits();
-    }
-
-    /**
-     * Holt alle Habit-Trackings für ein bestimmtes Datum.
-     *
-     * @param date Das Datum, für das die Trackings geholt werden sollen.
-     * @return LiveData-Liste aller Habit-Trackings für das gegebene Datum.
-     */
-    public LiveData<List<HabitTracking>> getHabitTrackingsForDate(String date) {
-        return habitTrackingRepository.getHabitTrackingsForDate(date);
-    }
-
-    /**
-     * Aktualisiert den längsten Streak für einen bestimmten Habit.
+     * Holt alle Habits zusammen mit ihrem heutigen Status in einer Abfrage.
      *
-     * @param habitId Die ID des Habits, für den der längste Streak aktualisiert werden soll.
-     */
-    public void updateLongestStreakForHabit(Integer habitId) {
-        executorService.execute(() -> habitRepository.updateLongestStreakForHabit(habitId));
-    }
-
-    /**
-     * Wird aufgerufen, wenn das ViewModel nicht mehr benötigt wird und zerstört wird.
-     * Schließt den ExecutorService, um Ressourcen freizugeben.
+     * @return LiveData-Liste aller Habits mit Tagesstatus.
      */
-    @Override
-    protected void onCleared() {
-        super.onCleared();
-        executorService.shutdown();
+    public LiveData<List<HabitWithStatus>> getAllHabits() {
+        return habitRepository.getAllHabitsWithStatus();
     }
 }
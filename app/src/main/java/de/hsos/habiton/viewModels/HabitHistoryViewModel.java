@@ -0,0 +1,48 @@
+package de.hsos.habiton.viewModels;
+
+import android.app.Application;
+
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import de.hsos.habiton.database.models.HabitTracking;
+import de.hsos.habiton.repository.HabitTrackingRepository;
+
+/**
+ * ViewModel für die tageweise Historie einer Gewohnheit.
+ * Die geladenen Seiten werden im Scope des ViewModels gehalten, sodass sie eine Konfigurationsänderung überstehen.
+ * @author Finn Garrels
+ */
+public class HabitHistoryViewModel extends AndroidViewModel {
+    private final HabitTrackingRepository habitTrackingRepository;
+    private LiveData<PagingData<HabitTracking>> history;
+    private int habitId;
+
+    /**
+     * Konstruktor für das HabitHistoryViewModel.
+     *
+     * @param application Die Instanz der Anwendung, die das ViewModel verwendet.
+     */
+    public HabitHistoryViewModel(Application application) {
+        super(application);
+        habitTrackingRepository = HabitTrackingRepository.getInstance(application);
+    }
+
+    /**
+     * Gibt die Historie einer Gewohnheit zurück, neueste Tage zuerst.
+     *
+     * @param habitId Die ID der Gewohnheit.
+     * @return LiveData mit den Seiten der Historie.
+     */
+    public LiveData<PagingData<HabitTracking>> getHistory(int habitId) {
+        if (history == null || this.habitId != habitId) {
+            this.habitId = habitId;
+            history = PagingLiveData.cachedIn(habitTrackingRepository.getHabitHistory(habitId),
+                    ViewModelKt.getViewModelScope(this));
+        }
+        return history;
+    }
+}
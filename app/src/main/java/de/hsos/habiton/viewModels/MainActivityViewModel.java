@@ -6,7 +6,9 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.MutableLiveData;
 import androidx.work.Constraints;
 import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
 import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
@@ -33,11 +35,12 @@ public class MainActivityViewModel extends AndroidViewModel {
     }
 
     /**
-     * Navigation wird versteckt, wenn das Ziel Settings oder Create-Button ist.
+     * Navigation wird versteckt, wenn das Ziel Settings, Create-Button oder die Historie einer Gewohnheit ist.
      * @param destinationId Die ID des aktuellen Navigationsziels.
      */
     public void updateBottomNavigationVisibility(int destinationId) {
-        boolean isVisible = destinationId != R.id.settingsFragment && destinationId != R.id.createButton;
+        boolean isVisible = destinationId != R.id.settingsFragment && destinationId != R.id.createButton
+                && destinationId != R.id.habitHistoryFragment;
         bottomNavigationVisibility.setValue(isVisible);
     }
 
@@ -51,6 +54,8 @@ public class MainActivityViewModel extends AndroidViewModel {
 
     /**
      * Plant die periodische Arbeit zum Zurücksetzen der Gewohnheiten.
+     * Zusätzlich wird der Wechsel einmalig sofort ausgeführt, damit Tage, an denen das Gerät aus war
+     * oder der Worker verzögert wurde, direkt beim Start nachgeholt werden.
      */
     public void scheduleResetHabitsWork() {
         Constraints constraints = new Constraints.Builder()
@@ -62,7 +67,9 @@ public class MainActivityViewModel extends AndroidViewModel {
                 .setInitialDelay(calculateInitialDelay(), TimeUnit.MILLISECONDS)
                 .build();
 
-        WorkManager.getInstance(getApplication()).enqueueUniquePeriodicWork("resetHabits", ExistingPeriodicWorkPolicy.KEEP, resetHabitsWorkRequest);
+        WorkManager workManager = WorkManager.getInstance(getApplication());
+        workManager.enqueueUniquePeriodicWork("resetHabits", ExistingPeriodicWorkPolicy.KEEP, resetHabitsWorkRequest);
+        workManager.enqueueUniqueWork("catchUpHabits", ExistingWorkPolicy.KEEP, OneTimeWorkRequest.from(ResetHabitsWorker.class));
     }
 
     /**
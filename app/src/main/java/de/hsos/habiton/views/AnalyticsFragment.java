@@ -2,24 +2,28 @@ package de.hsos.habiton.views;
 
 import static de.hsos.habiton.adapters.HabitAdapter.VIEW_TYPE_ANALYTICS;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.view.GestureDetector;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.FrameLayout;
-import android.widget.GridLayout;
 import android.widget.LinearLayout;
 import android.widget.PopupWindow;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.navigation.fragment.NavHostFragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -28,16 +32,22 @@ import com.google.android.material.button.MaterialButtonToggleGroup;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import de.hsos.habiton.adapters.BindingAdapters;
 import de.hsos.habiton.adapters.HabitAdapter;
 import de.hsos.habiton.R;
 import de.hsos.habiton.database.models.Habit;
+import de.hsos.habiton.database.models.HabitSummary;
+import de.hsos.habiton.database.models.HabitWithStatus;
 import de.hsos.habiton.databinding.AnalyticsFragmentBinding;
 import de.hsos.habiton.helpers.Utility;
 import de.hsos.habiton.viewModels.AnalyticsViewModel;
@@ -48,11 +58,17 @@ import de.hsos.habiton.viewModels.AnalyticsViewModel;
  */
 public class AnalyticsFragment extends Fragment {
 
+    private static final int YEAR_WEEKS = 53;
+
     private AnalyticsFragmentBinding binding;
     private HabitAdapter habitAdapter;
     private PopupWindow popupWindow;
     private AnalyticsViewModel viewModel;
-    private String selectedHabit;
+    private List<HabitSummary> habitSummaries = Collections.emptyList();
+    private Consumer<int[]> heatmapRenderer;
+    private LocalDate heatmapFrom;
+    private LocalDate heatmapTo;
+    private GestureDetector swipeDetector;
     private Utility utility;
 
     /**
@@ -64,8 +80,6 @@ public class AnalyticsFragment extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         viewModel = new ViewModelProvider(this).get(AnalyticsViewModel.class);
-        selectedHabit = "All Habits";
-
     }
 
     /**
@@ -83,16 +97,11 @@ public class AnalyticsFragment extends Fragment {
         setupRecyclerView();
         setupToggleButtonGroup();
         setupPopupMenu();
+        setupPeriodSwipe();
+        observeAnalytics();
         binding.toggleButton.check(R.id.button1);
         createCardsBasedOnFilter("Woche");
 
-        viewModel.getMaxLongestStreak().observe(getViewLifecycleOwner(), bestStreak -> {
-            if (bestStreak != null) {
-                TextView bestStreakView = binding.bestStreak;
-                bestStreakView.setText(String.valueOf(bestStreak));
-            }
-        });
-
         return binding.getRoot();
     }
 
@@ -102,9 +111,37 @@ public class AnalyticsFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        heatmapRenderer = null;
         binding = null;
     }
 
+    /**
+     * Registriert für jede Anzeige genau einen Observer. Bei einem Wechsel von Zeitraum oder Gewohnheit
+     * tauscht das ViewModel nur die Quelle der jeweiligen LiveData aus, es kommen keine Observer hinzu.
+     */
+    private void observeAnalytics() {
+        viewModel.getCompletionRate().observe(getViewLifecycleOwner(), rate -> {
+            TextView completionView = binding.completion;
+            completionView.setText(String.format(Locale.getDefault(), "%.2f%%", rate));
+        });
+        viewModel.getBestStreak().observe(getViewLifecycleOwner(), bestStreak -> {
+            if (bestStreak != null) {
+                TextView bestStreakView = binding.bestStreak;
+                bestStreakView.setText(String.valueOf(bestStreak));
+            }
+        });
+        viewModel.getHabitStats().observe(getViewLifecycleOwner(), habitAdapter::setStats);
+        viewModel.getCoCompletionMatrix().observe(getViewLifecycleOwner(), this::showCoCompletion);
+        viewModel.getHeatmapPercentages().observe(getViewLifecycleOwner(), values -> {
+            if (heatmapRenderer != null && values.isFor(heatmapFrom, heatmapTo)) {
+                heatmapRenderer.accept(values.getPercentages());
+            }
+        });
+        viewModel.getHabitSummaries().observe(getViewLifecycleOwner(), summaries -> {
+            habitSummaries = summaries != null ? summaries : Collections.emptyList();
+        });
+    }
+
     /**
      * Konfiguriert das RecyclerView für die Anzeige der Gewohnheiten.
      */
@@ -113,11 +150,24 @@ public class AnalyticsFragment extends Fragment {
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
         habitAdapter = new HabitAdapter(VIEW_TYPE_ANALYTICS);
+        habitAdapter.setOnHabitClickListener(this::openHabitHistory);
         recyclerView.setAdapter(habitAdapter);
 
         viewModel.getHabits().observe(getViewLifecycleOwner(), this::updateHabits);
     }
 
+    /**
+     * Öffnet die tageweise Historie einer Gewohnheit.
+     *
+     * @param habit Die Gewohnheit, deren Historie angezeigt werden soll.
+     */
+    private void openHabitHistory(Habit habit) {
+        Bundle arguments = new Bundle();
+        arguments.putInt(HabitHistoryFragment.ARG_HABIT_ID, habit.getId());
+        arguments.putString(HabitHistoryFragment.ARG_HABIT_NAME, habit.getName());
+        NavHostFragment.findNavController(this).navigate(R.id.action_analyticsFragment_to_habitHistoryFragment, arguments);
+    }
+
     /**
      * Konfiguriert die ToggleButton-Gruppe für die Auswahl des Zeitraums.
      */
@@ -127,6 +177,8 @@ public class AnalyticsFragment extends Fragment {
         toggleButtonGroup.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
             if (isChecked) {
                 String viewOption = getViewOptionFromId(checkedId);
+                viewModel.setWindowDays(getDaysFromViewOption(viewOption));
+                viewModel.setPeriodOffset(0);
                 createCardsBasedOnFilter(viewOption);
             }
         });
@@ -141,47 +193,89 @@ public class AnalyticsFragment extends Fragment {
     }
 
     /**
-     * Aktualisiert die Anzeige der Gewohnheiten basierend auf den aktualisierten Daten.
+     * Richtet das Blättern zwischen Zeiträumen ein. Eine Wischbewegung nach rechts zeigt den vorherigen,
+     * nach links den nächsten Zeitraum; über den aktuellen Zeitraum hinaus wird nicht geblättert.
+     */
+    private void setupPeriodSwipe() {
+        swipeDetector = new GestureDetector(requireContext(), new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onFling(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float velocityX, float velocityY) {
+                if (Math.abs(velocityX) <= Math.abs(velocityY)) {
+                    return false;
+                }
+                return showAdjacentPeriod(velocityX < 0 ? 1 : -1);
+            }
+        });
+        attachPeriodSwipe(binding.periodLabel);
+    }
+
+    /**
+     * Leitet Wischbewegungen auf einer Ansicht an die Zeitraum-Navigation weiter. Nur ein erkanntes Wischen wird
+     * verbraucht; alle anderen Ereignisse, auch ACTION_DOWN, erhält die Ansicht selbst, sodass Tipps weiterhin
+     * funktionieren. Verarbeitet die Ansicht ACTION_DOWN nicht, wird die Geste trotzdem übernommen, damit das
+     * Wischen erkannt werden kann.
      *
-     * @param habits Die Liste der Gewohnheiten, die aktualisiert werden sollen.
+     * @param view Die Ansicht.
      */
-    private void updateHabits(List<Habit> habits) {
-        habitAdapter.setHabits(habits);
-        for (int i = 0; i < habits.size(); i++) {
-            updateHabitStreak(i, habits.get(i));
+    @SuppressLint("ClickableViewAccessibility")
+    private void attachPeriodSwipe(View view) {
+        view.setOnTouchListener((v, event) -> {
+            boolean fling = swipeDetector.onTouchEvent(event);
+            return fling || v.onTouchEvent(event) || event.getActionMasked() == MotionEvent.ACTION_DOWN;
+        });
+    }
+
+    /**
+     * Zeigt den vorherigen oder nächsten Zeitraum an.
+     *
+     * @param step -1 für den vorherigen, 1 für den nächsten Zeitraum.
+     * @return true, wenn der Zeitraum gewechselt wurde.
+     */
+    private boolean showAdjacentPeriod(int step) {
+        int periodOffset = viewModel.getPeriodOffset() + step;
+        if (periodOffset > 0) {
+            return false;
         }
+        viewModel.setPeriodOffset(periodOffset);
+        createCardsBasedOnFilter(getViewOptionFromId(binding.toggleButton.getCheckedButtonId()));
+        return true;
     }
 
     /**
-     * Aktualisiert die Anzeige des Gewohnheitsstreaks an der angegebenen Position.
+     * Aktualisiert die Anzeige der Gewohnheiten basierend auf den aktualisierten Daten.
+     * Kennzahlen und Matrix werden vom ViewModel für die neue Liste neu berechnet.
      *
-     * @param position Die Position der Gewohnheit in der Liste.
-     * @param habit    Die Gewohnheit, deren Streak aktualisiert werden soll.
+     * @param habits Die Liste der Gewohnheiten, die aktualisiert werden sollen.
      */
-    private void updateHabitStreak(int position, Habit habit) {
-        viewModel.getHabitIdFromTitle(habit.getName(), habitId ->
-                viewModel.calculateBestStreak(habitId).observe(getViewLifecycleOwner(), longestStreak -> {
-                    habitAdapter.notifyItemChanged(position);
-                })
-        );
+    private void updateHabits(List<HabitWithStatus> habits) {
+        // Der längste Streak ist Teil jeder Gewohnheit und wird beim Binden direkt angezeigt
+        habitAdapter.setHabits(habits);
     }
 
     /**
-     * Aktualisiert die Anzeige der Abschlussrate basierend auf dem ausgewählten Zeitraum und der ausgewählten Gewohnheit.
+     * Zeigt die Matrix an, die zeigt, welche Gewohnheiten im ausgewählten Zeitraum am selben Tag erledigt wurden.
+     * Die Zeilen sind mit Nummer und Namen der Gewohnheit beschriftet, die Spalten mit der passenden Nummer.
+     *
+     * @param values Die Matrix zusammen mit den Gewohnheiten in Reihenfolge ihrer Zeilen und Spalten.
      */
-    private void updateCompletionRate() {
-        int days = getDaysFromViewOption(getViewOptionFromId(binding.toggleButton.getCheckedButtonId()));
-        if (selectedHabit.equals("All Habits")) {
-            viewModel.getOverallCompletionRate(days).observe(getViewLifecycleOwner(), rate -> {
-                TextView completionView = binding.completion;
-                completionView.setText(String.format(Locale.getDefault(), "%.2f%%", rate));
-            });
-        } else {
-            viewModel.getHabitIdFromTitle(this.selectedHabit, habitId -> viewModel.getCompletionRateForHabit(habitId, days).observe(getViewLifecycleOwner(), rate -> {
-                TextView completionView = binding.completion;
-                completionView.setText(String.format(Locale.getDefault(), "%.2f%%", rate));
-            }));
+    private void showCoCompletion(AnalyticsViewModel.CoCompletionValues values) {
+        HeatmapView heatmapView = binding.coCompletionHeatmap;
+        List<HabitWithStatus> habits = values.getHabits();
+        String[] rowLabels = new String[habits.size()];
+        String[] columnLabels = new String[habits.size()];
+        for (int i = 0; i < habits.size(); i++) {
+            columnLabels[i] = String.valueOf(i + 1);
+            rowLabels[i] = columnLabels[i] + "  " + habits.get(i).getHabit().getName();
         }
+
+        heatmapView.setGrid(habits.size(), habits.size(), false);
+        heatmapView.setAxisLabels(rowLabels, columnLabels);
+        heatmapView.setValues(values.getMatrix());
+        heatmapView.setOnCellClickListener((index, value) -> {
+            String first = habits.get(index / habits.size()).getHabit().getName();
+            String second = habits.get(index % habits.size()).getHabit().getName();
+            Toast.makeText(requireContext(), getString(R.string.co_completion_summary, first, second, value), Toast.LENGTH_SHORT).show();
+        });
     }
 
     /**
@@ -193,29 +287,24 @@ public class AnalyticsFragment extends Fragment {
         LayoutInflater inflater = LayoutInflater.from(getContext());
         FrameLayout mainLayout = binding.historyFragmentContainer;
         mainLayout.removeAllViews();
-        updateCompletionRate();
 
         View newContentView;
-        int days = getDaysFromViewOption(viewOption);
-
-        viewModel.getOverallCompletionRate(days).observe(getViewLifecycleOwner(), rate -> {
-            TextView completionView = binding.completion;
-            completionView.setText(String.format(Locale.getDefault(), "%.2f%%", rate));
-        });
+        int periodOffset = viewModel.getPeriodOffset();
+        LocalDate startDate = getPeriodStart(viewOption, periodOffset);
 
         switch (viewOption) {
             case "Woche":
             case "Monat":
                 newContentView = inflater.inflate(R.layout.analytics_week_month_module, mainLayout, false);
                 if (viewOption.equals("Woche")) {
-                    addHabitPointsForWeek(newContentView);
+                    addHabitPointsForWeek(newContentView, startDate);
                 } else {
-                    addHabitPointsForCurrentMonth(newContentView);
+                    addHabitPointsForMonth(newContentView, startDate);
                 }
                 break;
             case "Jahr":
                 newContentView = inflater.inflate(R.layout.analytics_year_module, mainLayout, false);
-                addHabitPointsForCurrentYear(newContentView);
+                addHabitPointsForYear(newContentView, startDate);
                 break;
             default:
                 newContentView = inflater.inflate(R.layout.analytics_week_month_module, mainLayout, false);
@@ -223,175 +312,175 @@ public class AnalyticsFragment extends Fragment {
         }
 
         mainLayout.addView(newContentView);
+        binding.periodLabel.setText(getPeriodLabel(viewOption, startDate));
+
+        // Benachbarte Zeiträume vorab laden; der Zeitraum nach dem aktuellen existiert noch nicht
+        LocalDate previousStart = getPeriodStart(viewOption, periodOffset - 1);
+        viewModel.prefetchHeatmapRange(previousStart, getPeriodEnd(viewOption, previousStart));
+        if (periodOffset < 0) {
+            LocalDate nextStart = getPeriodStart(viewOption, periodOffset + 1);
+            viewModel.prefetchHeatmapRange(nextStart, getPeriodEnd(viewOption, nextStart));
+        }
     }
 
     /**
-     * Fügt Datenpunkte für eine Woche zur GridLayout-Ansicht hinzu. Jeder Tag der Woche wird als Spalte dargestellt.
+     * Ermittelt den ersten Tag eines Zeitraums relativ zum aktuellen.
      *
-     * @param layoutView Die Ansicht, zu der die Datenpunkte hinzugefügt werden sollen.
+     * @param viewOption   Die ausgewählte Ansichtsoption (Woche, Monat, Jahr).
+     * @param periodOffset 0 für den aktuellen Zeitraum, -1 für den vorherigen usw.
+     * @return Der erste Tag des Zeitraums.
      */
-    private void addHabitPointsForWeek(View layoutView) {
-        GridLayout gridLayout = layoutView.findViewById(R.id.buttonGrid);
-        LocalDate startDate = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-        for (int day = 0; day < 7; day++) {
-            LocalDate date = startDate.plusDays(day);
-            addHabitDataToGridLayout(gridLayout, date, 1, day);
+    private LocalDate getPeriodStart(String viewOption, int periodOffset) {
+        LocalDate today = LocalDate.now();
+        switch (viewOption) {
+            case "Monat":
+                return today.withDayOfMonth(1).plusMonths(periodOffset);
+            case "Jahr":
+                return today.with(TemporalAdjusters.firstDayOfYear()).plusYears(periodOffset);
+            default:
+                return today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).plusWeeks(periodOffset);
         }
     }
+
     /**
-     * Fügt Datenpunkte für den aktuellen Monat zur GridLayout-Ansicht hinzu. Jeder Tag des Monats wird entsprechend
-     * dem Wochentag und der Woche des Monats positioniert.
+     * Ermittelt den letzten Tag, der für einen Zeitraum in der Heatmap angezeigt wird.
+     * Die Jahresansicht umfasst immer 53 volle Wochen ab dem 1. Januar.
      *
-     * @param layoutView Die Ansicht, zu der die Datenpunkte hinzugefügt werden sollen.
+     * @param viewOption Die ausgewählte Ansichtsoption (Woche, Monat, Jahr).
+     * @param startDate  Der erste Tag des Zeitraums.
+     * @return Der letzte angezeigte Tag des Zeitraums.
      */
-    private void addHabitPointsForCurrentMonth(View layoutView) {
-        GridLayout gridLayout = layoutView.findViewById(R.id.buttonGrid);
-        gridLayout.removeAllViews();
-
-        LocalDate today = LocalDate.now();
-        LocalDate startDate = today.withDayOfMonth(1); // Erster Tag des aktuellen Monats
-
-        int totalDays = (int) ChronoUnit.DAYS.between(startDate, startDate.plusMonths(1)); // Anzahl der Tage im aktuellen Monat
-        int firstDayOfWeekIndex = startDate.getDayOfWeek().getValue() - 1; // Montag = 0, Sonntag = 6
-        int numberOfRows = (totalDays + firstDayOfWeekIndex) / 7 + ((totalDays + firstDayOfWeekIndex) % 7 == 0 ? 0 : 1);
-
-        gridLayout.setRowCount(numberOfRows); // Zeilen für die Tage
-        gridLayout.setColumnCount(7); // 7 Tage der Woche
-
-        for (int i = 0; i < totalDays; i++) {
-            LocalDate date = startDate.plusDays(i);
-            int rowIndex = (i + firstDayOfWeekIndex) / 7; // Berechnung der Zeile
-            int columnIndex = (i + firstDayOfWeekIndex) % 7; // Berechnung der Spalte
-            addHabitDataToGridLayout(gridLayout, date, rowIndex, columnIndex);
+    private LocalDate getPeriodEnd(String viewOption, LocalDate startDate) {
+        switch (viewOption) {
+            case "Monat":
+                return startDate.plusMonths(1).minusDays(1);
+            case "Jahr":
+                return startDate.plusDays(YEAR_WEEKS * 7 - 1);
+            default:
+                return startDate.plusDays(6);
         }
     }
+
     /**
-     * Fügt einen Datenpunkt für das Jahr zur GridLayout-Ansicht hinzu, basierend auf der prozentualen Erfüllung der Habits.
+     * Erstellt die Beschriftung eines Zeitraums, z. B. "12.10. – 18.10.2026", "Oktober 2026" oder "2026".
      *
-     * @param gridLayout Das GridLayout, zu dem der Datenpunkt hinzugefügt wird.
-     * @param rowIndex Die Reihe im GridLayout, zu der der Datenpunkt hinzugefügt wird.
-     * @param columnIndex Die Spalte im GridLayout, zu der der Datenpunkt hinzugefügt wird.
-     * @param numberOfHabits Die Anzahl der Habits für diesen Tag.
-     * @param totalHabits Die Gesamtanzahl der Habits.
+     * @param viewOption Die ausgewählte Ansichtsoption (Woche, Monat, Jahr).
+     * @param startDate  Der erste Tag des Zeitraums.
+     * @return Die Beschriftung.
      */
-    private void addHabitPointsToDayForYear(GridLayout gridLayout, int rowIndex, int columnIndex, int numberOfHabits, int totalHabits) {
-        LayoutInflater inflater = LayoutInflater.from(getContext());
-
-        View pointView;
-        int percentage = totalHabits > 0 ? (numberOfHabits * 100 / totalHabits) : 0;
-
-        if (percentage == 100) {
-            pointView = inflater.inflate(R.layout.analytics_year_100_item, gridLayout, false);
-        } else if (percentage >= 75) {
-            pointView = inflater.inflate(R.layout.analytics_year_75_item, gridLayout, false);
-        } else if (percentage >= 50) {
-            pointView = inflater.inflate(R.layout.analytics_year_50_item, gridLayout, false);
-        } else if (percentage > 0) {
-            pointView = inflater.inflate(R.layout.analytics_year_25_item, gridLayout, false);
-        } else {
-            pointView = inflater.inflate(R.layout.analytics_year_0_item, gridLayout, false);
+    private String getPeriodLabel(String viewOption, LocalDate startDate) {
+        switch (viewOption) {
+            case "Monat":
+                return startDate.format(DateTimeFormatter.ofPattern("LLLL yyyy", Locale.getDefault()));
+            case "Jahr":
+                return String.valueOf(startDate.getYear());
+            default:
+                return startDate.format(DateTimeFormatter.ofPattern("dd.MM.", Locale.getDefault())) + " – "
+                        + startDate.plusDays(6).format(DateTimeFormatter.ofPattern("dd.MM.yyyy", Locale.getDefault()));
         }
-
-        GridLayout.Spec rowSpec = GridLayout.spec(rowIndex);
-        GridLayout.Spec columnSpec = GridLayout.spec(columnIndex);
-        GridLayout.LayoutParams params = new GridLayout.LayoutParams(rowSpec, columnSpec);
-        params.setMargins(4, 4, 4, 4);
-        pointView.setLayoutParams(params);
-        gridLayout.addView(pointView);
-
     }
+
     /**
-     * Fügt einen Datenpunkt für Woche oder Monat zur GridLayout-Ansicht hinzu, basierend auf der prozentualen Erfüllung der Habits.
+     * Zeigt die Erfüllung einer Woche in der Heatmap an. Jeder Tag der Woche wird als Spalte dargestellt.
      *
-     * @param gridLayout Das GridLayout, zu dem der Datenpunkt hinzugefügt wird.
-     * @param rowIndex Die Reihe im GridLayout für die Daten.
-     * @param columnIndex Die Spalte im GridLayout für die Daten.
-     * @param numberOfHabits Die Anzahl der Habits für diesen Tag.
-     * @param totalHabits Die Gesamtanzahl der Habits.
+     * @param layoutView Die Ansicht, die die Heatmap enthält.
+     * @param startDate  Der Montag der Woche.
      */
-    private void addHabitPointsToDay(GridLayout gridLayout, int rowIndex, int columnIndex, int numberOfHabits, int totalHabits) {
-        LayoutInflater inflater = LayoutInflater.from(getContext());
-        View pointView;
-        int percentage = totalHabits > 0 ? (numberOfHabits * 100 / totalHabits) : 0;
-
-        if (percentage == 100) {
-            pointView = inflater.inflate(R.layout.analytics_week_month_100_item, gridLayout, false);
-        } else if (percentage >= 75) {
-            pointView = inflater.inflate(R.layout.analytics_week_month_75_item, gridLayout, false);
-        } else if (percentage >= 50) {
-            pointView = inflater.inflate(R.layout.analytics_week_month_50_item, gridLayout, false);
-        } else if (percentage > 0) {
-            pointView = inflater.inflate(R.layout.analytics_week_month_25_item, gridLayout, false);
-        } else {
-            pointView = inflater.inflate(R.layout.analytics_week_month_0_item, gridLayout, false);
-        }
-
-        GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-        params.rowSpec = GridLayout.spec(rowIndex);
-        params.columnSpec = GridLayout.spec(columnIndex);
-        params.setMargins(10, 10, 10, 10);
-        pointView.setLayoutParams(params);
-        gridLayout.addView(pointView);
+    private void addHabitPointsForWeek(View layoutView, LocalDate startDate) {
+        HeatmapView heatmapView = layoutView.findViewById(R.id.heatmapView);
+
+        heatmapView.setGrid(1, 7, false);
+        heatmapView.setCacheKey("week-" + startDate + "_all", frozenCellCount(startDate, 0));
+        setupHeatmapClicks(heatmapView, startDate, 0);
+        attachPeriodSwipe(heatmapView);
+        showHeatmapRange(startDate, getPeriodEnd("Woche", startDate), heatmapView::setValues);
     }
     /**
-     * Fügt Datenpunkte für das aktuelle Jahr zur GridLayout-Ansicht hinzu. Jede Woche des Jahres wird durch eine Zeile repräsentiert.
+     * Zeigt die Erfüllung eines Monats in der Heatmap an. Jeder Tag des Monats wird entsprechend
+     * dem Wochentag und der Woche des Monats positioniert.
      *
-     * @param layoutView Die Ansicht, zu der die Datenpunkte hinzugefügt werden sollen.
+     * @param layoutView Die Ansicht, die die Heatmap enthält.
+     * @param startDate  Der erste Tag des Monats.
      */
-    private void addHabitPointsForCurrentYear(View layoutView) {
-        GridLayout gridLayout = layoutView.findViewById(R.id.buttonGridYear);
+    private void addHabitPointsForMonth(View layoutView, LocalDate startDate) {
+        HeatmapView heatmapView = layoutView.findViewById(R.id.heatmapView);
 
+        int totalDays = startDate.lengthOfMonth();
+        int firstDayOfWeekIndex = startDate.getDayOfWeek().getValue() - 1; // Montag = 0, Sonntag = 6
+        int numberOfRows = (totalDays + firstDayOfWeekIndex) / 7 + ((totalDays + firstDayOfWeekIndex) % 7 == 0 ? 0 : 1);
 
-        LocalDate today = LocalDate.now();
-        LocalDate startDate = today.with(TemporalAdjusters.firstDayOfYear());
-        int totalWeeks = 53;
-
+        heatmapView.setGrid(numberOfRows, 7, false);
+        heatmapView.setCacheKey("month-" + startDate + "_all", frozenCellCount(startDate, firstDayOfWeekIndex));
+        setupHeatmapClicks(heatmapView, startDate, firstDayOfWeekIndex);
+        attachPeriodSwipe(heatmapView);
+        showHeatmapRange(startDate, getPeriodEnd("Monat", startDate), percentages -> {
+            // Kacheln vor dem ersten und nach dem letzten Tag des Monats bleiben leer
+            int[] cells = new int[numberOfRows * 7];
+            Arrays.fill(cells, HeatmapView.EMPTY_CELL);
+            System.arraycopy(percentages, 0, cells, firstDayOfWeekIndex, totalDays);
+            heatmapView.setValues(cells);
+        });
+    }
+    /**
+     * Zeigt die Erfüllung eines Jahres in der Heatmap an. Jede Woche des Jahres wird durch eine Spalte repräsentiert.
+     *
+     * @param layoutView Die Ansicht, die die Heatmap enthält.
+     * @param startDate  Der 1. Januar des Jahres.
+     */
+    private void addHabitPointsForYear(View layoutView, LocalDate startDate) {
+        HeatmapView heatmapView = layoutView.findViewById(R.id.heatmapView);
+
+        heatmapView.setGrid(7, YEAR_WEEKS, true);
+        heatmapView.setCacheKey("year-" + startDate + "_all", frozenCellCount(startDate, 0));
+        setupHeatmapClicks(heatmapView, startDate, 0);
+        // Das Jahresraster wird horizontal gescrollt, daher wird hier nur über die Zeitraum-Beschriftung geblättert
+        showHeatmapRange(startDate, getPeriodEnd("Jahr", startDate), heatmapView::setValues);
+    }
 
-        for (int i = 0; i < totalWeeks; i++) {
-            for (int j = 0; j < 7; j++) {
-                LocalDate date = startDate.plusDays((i * 7) + j);
-                addHabitDataToGridLayout(gridLayout, date, j, i);
-            }
+    /**
+     * Zeigt einen Datumsbereich in der aktuellen Heatmap an. Das ViewModel tauscht dafür die Abfrage aus,
+     * Werte für einen anderen Bereich, etwa den zuvor angezeigten Zeitraum, werden nicht weitergegeben.
+     *
+     * @param from     Das erste Datum des Bereichs.
+     * @param to       Das letzte Datum des Bereichs.
+     * @param renderer Überträgt die Prozentwerte pro Tag in die Heatmap.
+     */
+    private void showHeatmapRange(LocalDate from, LocalDate to, Consumer<int[]> renderer) {
+        heatmapFrom = from;
+        heatmapTo = to;
+        heatmapRenderer = renderer;
+        viewModel.setHeatmapRange(from, to);
+        AnalyticsViewModel.HeatmapValues current = viewModel.getHeatmapPercentages().getValue();
+        if (current != null && current.isFor(from, to)) {
+            renderer.accept(current.getPercentages());
         }
     }
+
     /**
-     * Fügt Daten zu einem GridLayout hinzu, basierend auf dem Datum. Zeigt leere Datenpunkte für zukünftige Tage und erfüllte/unerfüllte Gewohnheiten für vergangene Tage.
+     * Ermittelt die Anzahl der Kacheln, die zu abgeschlossenen Tagen gehören. Der heutige Tag kann noch
+     * umgeschaltet werden und wird daher wie alle folgenden Tage bei jedem Zeichnen neu gezeichnet.
      *
-     * @param gridLayout Das GridLayout, zu dem die Daten hinzugefügt werden.
-     * @param date Das Datum, für das die Daten hinzugefügt werden.
-     * @param rowIndex Die Reihe im GridLayout für die Daten.
-     * @param columnIndex Die Spalte im GridLayout für die Daten.
+     * @param startDate  Das Datum der ersten belegten Kachel.
+     * @param cellOffset Die Anzahl der leeren Kacheln vor der ersten belegten Kachel.
+     * @return Die Anzahl der unveränderlichen Kacheln in Reihenfolge der Werte.
      */
-    private void addHabitDataToGridLayout(GridLayout gridLayout, LocalDate date, int rowIndex, int columnIndex) {
-        String dateString = date.toString();
-        LocalDate today = LocalDate.now();
+    private int frozenCellCount(LocalDate startDate, int cellOffset) {
+        long pastDays = ChronoUnit.DAYS.between(startDate, LocalDate.now());
+        return pastDays > 0 ? cellOffset + (int) pastDays : 0;
+    }
 
-        if (date.isAfter(today)) {
-            View pointView;
-
-            GridLayout.Spec rowSpec = GridLayout.spec(rowIndex);
-            GridLayout.Spec columnSpec = GridLayout.spec(columnIndex);
-            GridLayout.LayoutParams params = new GridLayout.LayoutParams(rowSpec, columnSpec);
-
-            if (gridLayout.getId() == R.id.buttonGrid) {
-                pointView = LayoutInflater.from(getContext()).inflate(R.layout.analytics_week_month_0_item, gridLayout, false);
-                params.setMargins(10, 10, 10, 10);
-                pointView.setLayoutParams(params);
-            } else {
-                pointView = LayoutInflater.from(getContext()).inflate(R.layout.analytics_year_0_item, gridLayout, false);
-                params.setMargins(4, 4, 4, 4);
-                pointView.setLayoutParams(params);
-            }
-            gridLayout.addView(pointView);
-        } else {
-            viewModel.getNumberOfHabitsForDay(dateString).observe(getViewLifecycleOwner(), numberOfHabits -> viewModel.getTotalHabitsForDate(dateString).observe(getViewLifecycleOwner(), totalHabits -> {
-                if (gridLayout.getId() == R.id.buttonGridYear) {
-                    addHabitPointsToDayForYear(gridLayout, rowIndex, columnIndex, numberOfHabits, totalHabits);
-                } else {
-                    addHabitPointsToDay(gridLayout, rowIndex, columnIndex, numberOfHabits, totalHabits);
-                }
-            }));
-        }
+    /**
+     * Zeigt beim Tippen auf eine Kachel der Heatmap das Datum und die Erfüllung des Tages an.
+     *
+     * @param heatmapView Die Heatmap.
+     * @param startDate   Das Datum der ersten belegten Kachel.
+     * @param cellOffset  Die Anzahl der leeren Kacheln vor der ersten belegten Kachel.
+     */
+    private void setupHeatmapClicks(HeatmapView heatmapView, LocalDate startDate, int cellOffset) {
+        heatmapView.setOnCellClickListener((index, value) -> {
+            LocalDate date = startDate.plusDays(index - cellOffset);
+            Toast.makeText(requireContext(), getString(R.string.heatmap_day_summary, date, value), Toast.LENGTH_SHORT).show();
+        });
     }
 
     /**
@@ -399,9 +488,11 @@ public class AnalyticsFragment extends Fragment {
      * und wenn ein zugehöriges Emoji-Icon vorhanden ist, wird dieses vor den Titel gesetzt.
      *
      * @param container Der LinearLayout-Container, zu dem das Menüelement hinzugefügt wird.
-     * @param title Der Texttitel des Menüelements.
+     * @param habitId   Die ID der Gewohnheit oder null für alle Gewohnheiten.
+     * @param title     Der Texttitel des Menüelements.
+     * @param icon      Das Icon der Gewohnheit oder null.
      */
-    private void addMenuItem(LinearLayout container, String title) {
+    private void addMenuItem(LinearLayout container, @Nullable Integer habitId, String title, @Nullable String icon) {
         Context context = getContext();
         if (context == null) return;
 
@@ -409,16 +500,8 @@ public class AnalyticsFragment extends Fragment {
 
         // Erstellt einen neuen MaterialButton als Menüelement.
         MaterialButton popupMenuButton = (MaterialButton) inflater.inflate(R.layout.popup_button, container, false);
-        popupMenuButton.setText(title);
-
-        // Beobachtet das zugehörige Icon zum Titel und setzt es, falls vorhanden.
-        viewModel.getIconByName(title).observe(getViewLifecycleOwner(), icon -> {
-            if (utility.isEmoji(icon)) {
-                String titleWithEmoji = icon + "  " + title;
-                popupMenuButton.setText(titleWithEmoji);
-            }
-            BindingAdapters.setIconSrc(popupMenuButton, icon);
-        });
+        popupMenuButton.setText(utility.isEmoji(icon) ? icon + "  " + title : title);
+        BindingAdapters.setIconSrc(popupMenuButton, icon);
 
         // Setzt Layout-Parameter für das Menüelement.
         LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
@@ -426,38 +509,22 @@ public class AnalyticsFragment extends Fragment {
 
         // Definiert das Verhalten bei Klick auf das Menüelement.
         popupMenuButton.setOnClickListener(v -> {
-            this.selectedHabit = title;
-            updateCompletionRate();
-
-            if ("All Habits".equals(title)) {
-                viewModel.getMaxLongestStreak().observe(getViewLifecycleOwner(), bestStreak -> {
-                    if (bestStreak != null) {
-                        TextView bestStreakView = binding.bestStreak;
-                        bestStreakView.setText(String.valueOf(bestStreak));
-                    }
-                });
-            } else {
-                viewModel.getHabitIdFromTitle(title, habitId -> viewModel.calculateBestStreak(habitId).observe(getViewLifecycleOwner(), bestStreak -> {
-                    TextView bestStreakView = binding.bestStreak;
-                    bestStreakView.setText(String.valueOf(bestStreak));
-                }));
-            }
+            viewModel.selectHabit(habitId);
 
             if (popupWindow != null) {
                 popupWindow.dismiss();
             }
 
             // Aktualisiert das Icon des Menübuttons, um das ausgewählte Element widerzuspiegeln.
-            viewModel.getIconByName(title).observe(getViewLifecycleOwner(), icon -> {
-                BindingAdapters.setIconSrc(binding.menuButton, icon);
-                binding.menuButton.setText(title);
-            });
+            BindingAdapters.setIconSrc(binding.menuButton, icon);
+            binding.menuButton.setText(title);
         });
 
         container.addView(popupMenuButton);
     }
     /**
      * Zeigt ein vollbreites Popup-Menü an, das es dem Benutzer ermöglicht, eine Gewohnheit auszuwählen.
+     * Die Einträge werden aus den beobachteten Stammdaten (ID, Name und Icon) erstellt, ohne erneute Abfrage.
      *
      * @param anchorView Die Ansicht, an der das Popup-Menü ausgerichtet wird.
      */
@@ -470,15 +537,10 @@ public class AnalyticsFragment extends Fragment {
         View popupView = LayoutInflater.from(getContext()).inflate(R.layout.popup_full_width, null);
         LinearLayout popupContainer = popupView.findViewById(R.id.popupContainer);
 
-        addMenuItem(popupContainer, "All Habits");
-
-        viewModel.getHabitTitles().observe(getViewLifecycleOwner(), habitTitles -> {
-            if (habitTitles != null) {
-                for (String title : habitTitles) {
-                    addMenuItem(popupContainer, title);
-                }
-            }
-        });
+        addMenuItem(popupContainer, null, getString(R.string.all_habits), null);
+        for (HabitSummary habit : habitSummaries) {
+            addMenuItem(popupContainer, habit.getId(), habit.getName(), habit.getIcon());
+        }
 
         initPopupWindow(popupView, anchorView);
     }
@@ -21,10 +21,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.button.MaterialButton;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 import de.hsos.habiton.R;
 import de.hsos.habiton.adapters.HabitAdapter;
 import de.hsos.habiton.database.models.Habit;
@@ -65,22 +61,19 @@ public class DashboardFragment extends Fragment {
      */
     private void setupViewModel() {
         dashboardViewModel = new ViewModelProvider(requireActivity()).get(DashboardViewModel.class);
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        String currentDate = dateFormat.format(new Date());
-
         dashboardViewModel.getAllHabits().observe(getViewLifecycleOwner(), habits -> {
             adapter.setHabits(habits);
-            updateEmptyStateButton();
+            updateEmptyStateButton(habits.isEmpty());
         });
-
-        dashboardViewModel.getHabitTrackingsForDate(currentDate).observe(getViewLifecycleOwner(), trackings -> adapter.setHabitTrackings(trackings));
     }
 
     /**
      * Aktualisiert den Button für den leeren Zustand basierend auf dem aktuellen Status der Habit-Liste.
+     *
+     * @param isEmpty true, wenn keine Gewohnheiten vorhanden sind.
      */
-    private void updateEmptyStateButton() {
-        if (adapter.getItemCount() == 0) {
+    private void updateEmptyStateButton(boolean isEmpty) {
+        if (isEmpty) {
             addEmptyStateButton();
         } else {
             hideEmptyStateButton();
@@ -244,9 +244,16 @@ public class EditHabitFragment extends DialogFragment {
             return;
         }
 
-        viewModel.updateHabit(existingHabit.getId(), name, description, selectedIcon, existingHabit.getStreak());
-        Toast.makeText(getActivity(), "Habit updated", Toast.LENGTH_SHORT).show();
-        dismiss();
+        // Ein vergebener Name würde die Änderung verwerfen, daher bleibt der Dialog in diesem Fall offen
+        viewModel.doesOtherHabitExist(name, existingHabit.getId()).observe(this, exists -> {
+            if (exists) {
+                Toast.makeText(getActivity(), "Name already exists", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            viewModel.updateHabit(existingHabit.getId(), name, description, selectedIcon);
+            Toast.makeText(getActivity(), "Habit updated", Toast.LENGTH_SHORT).show();
+            dismiss();
+        });
     }
 
     /**
@@ -0,0 +1,74 @@
+package de.hsos.habiton.views;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.navigation.fragment.NavHostFragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+
+import de.hsos.habiton.adapters.HabitHistoryAdapter;
+import de.hsos.habiton.databinding.HabitHistoryFragmentBinding;
+import de.hsos.habiton.viewModels.HabitHistoryViewModel;
+
+/**
+ * Ein Fragment zur Anzeige der tageweisen Historie einer Gewohnheit.
+ * Die Tage werden beim Scrollen seitenweise im Hintergrund geladen.
+ * @author Finn Garrels
+ */
+public class HabitHistoryFragment extends Fragment {
+    public static final String ARG_HABIT_ID = "habitId";
+    public static final String ARG_HABIT_NAME = "habitName";
+
+    private HabitHistoryFragmentBinding binding;
+    private HabitHistoryViewModel viewModel;
+
+    /**
+     * Erstellt die Benutzeroberfläche des Fragments.
+     *
+     * @param inflater           Der LayoutInflater, der verwendet wird, um die XML-Layout-Ressource aufzublasen.
+     * @param container          Wenn nicht null, ist dies der Elternansicht, zu der das fragment hinzugefügt wird.
+     * @param savedInstanceState Wenn nicht null, wird dies das zuvor gespeicherte Zustandsbündel sein.
+     * @return Die aufgeblasene Ansicht des Fragments.
+     */
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        binding = HabitHistoryFragmentBinding.inflate(inflater, container, false);
+        viewModel = new ViewModelProvider(this).get(HabitHistoryViewModel.class);
+        return binding.getRoot();
+    }
+
+    /**
+     * Wird aufgerufen, nachdem die zugehörige Ansicht des Fragments erstellt wurde.
+     *
+     * @param view               Die erstellte Ansicht.
+     * @param savedInstanceState Wenn nicht null, ist dies das zuvor gespeicherte Zustandsbündel.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        Bundle arguments = requireArguments();
+        binding.pageTitle.setText(arguments.getString(ARG_HABIT_NAME));
+        binding.backicon.setOnClickListener(v -> NavHostFragment.findNavController(this).navigateUp());
+
+        HabitHistoryAdapter adapter = new HabitHistoryAdapter();
+        binding.historyList.setLayoutManager(new LinearLayoutManager(getContext()));
+        binding.historyList.setAdapter(adapter);
+        viewModel.getHistory(arguments.getInt(ARG_HABIT_ID)).observe(getViewLifecycleOwner(),
+                pagingData -> adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
+    }
+
+    /**
+     * Wird aufgerufen, wenn die Ansicht des Fragments zerstört wird.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        binding = null;
+    }
+}
@@ -0,0 +1,420 @@
+package de.hsos.habiton.views;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import java.util.Arrays;
+
+import de.hsos.habiton.R;
+import de.hsos.habiton.helpers.HeatmapBitmapCache;
+
+/**
+ * Eine View, die die prozentuale Erfüllung der Gewohnheiten als Raster aus Kacheln zeichnet.
+ * Alle Kacheln werden in einem einzigen {@link #onDraw(Canvas)}-Durchlauf aus einem Integer-Array gezeichnet,
+ * ohne dass pro Tag eine eigene View erzeugt wird. Kacheln abgeschlossener Tage ändern sich nicht mehr; ist ein
+ * Cache-Schlüssel gesetzt, werden sie im Hintergrund einmalig in eine Bitmap gerendert und danach nur noch kopiert.
+ * Die noch veränderlichen Kacheln werden darüber gezeichnet. Optional werden Zeilen und Spalten links bzw. oberhalb
+ * des Rasters beschriftet.
+ * @author Finn Garrels
+ */
+public class HeatmapView extends View {
+
+    /**
+     * Wert für Kacheln, die nicht gezeichnet werden (z. B. Tage vor dem Monatsanfang).
+     */
+    public static final int EMPTY_CELL = -1;
+
+    /**
+     * Listener, der bei einem Tipp auf eine Kachel aufgerufen wird.
+     */
+    public interface OnCellClickListener {
+        /**
+         * Wird aufgerufen, wenn eine Kachel angetippt wurde.
+         *
+         * @param index Der Index der Kachel im Werte-Array.
+         * @param value Der Wert der Kachel (0 bis 100).
+         */
+        void onCellClick(int index, int value);
+    }
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cellRect = new RectF();
+    private final int[] levelColors = new int[5];
+    private final float cellSize;
+    private final float cellSpacing;
+    private final float cornerRadius;
+    private final Drawable completedIcon;
+    private final TextPaint labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final float maxRowLabelWidth;
+
+    private int rows = 1;
+    private int columns = 1;
+    private boolean columnMajor;
+    private int[] values = new int[0];
+    private OnCellClickListener onCellClickListener;
+    private String cacheKey;
+    private int frozenCells;
+    private String requestedLayerKey;
+    private int[] requestedLayerCells;
+    private Bitmap frozenLayer;
+    private int frozenLayerCells;
+    private String[] rowLabels = new String[0];
+    private String[] columnLabels = new String[0];
+    private float rowLabelWidth;
+    private float columnLabelHeight;
+
+    /**
+     * Konstruktor für die HeatmapView.
+     *
+     * @param context Der Kontext der Anwendung.
+     * @param attrs   Die Attribute aus dem Layout.
+     */
+    public HeatmapView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.HeatmapView);
+        try {
+            cellSize = a.getDimension(R.styleable.HeatmapView_cellSize, 12 * density);
+            cellSpacing = a.getDimension(R.styleable.HeatmapView_cellSpacing, 3 * density);
+            cornerRadius = a.getDimension(R.styleable.HeatmapView_cellCornerRadius, 4 * density);
+            levelColors[0] = a.getColor(R.styleable.HeatmapView_emptyCellColor, ContextCompat.getColor(context, R.color.highlight));
+            completedIcon = a.getDrawable(R.styleable.HeatmapView_completedIcon);
+            labelPaint.setTextSize(a.getDimension(R.styleable.HeatmapView_labelTextSize, 11 * getResources().getDisplayMetrics().scaledDensity));
+            labelPaint.setColor(a.getColor(R.styleable.HeatmapView_labelTextColor, ContextCompat.getColor(context, R.color.subtext)));
+            maxRowLabelWidth = a.getDimension(R.styleable.HeatmapView_maxRowLabelWidth, 120 * density);
+        } finally {
+            a.recycle();
+        }
+
+        levelColors[1] = ContextCompat.getColor(context, R.color.primary25);
+        levelColors[2] = ContextCompat.getColor(context, R.color.primary50);
+        levelColors[3] = ContextCompat.getColor(context, R.color.primary75);
+        levelColors[4] = ContextCompat.getColor(context, R.color.primary);
+        cellPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * Legt die Abmessungen des Rasters fest.
+     *
+     * @param rows        Die Anzahl der Zeilen.
+     * @param columns     Die Anzahl der Spalten.
+     * @param columnMajor true, wenn die Werte spaltenweise (z. B. eine Woche pro Spalte) angeordnet sind, sonst zeilenweise.
+     */
+    public void setGrid(int rows, int columns, boolean columnMajor) {
+        this.rows = rows;
+        this.columns = columns;
+        this.columnMajor = columnMajor;
+        clearFrozenLayer();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Setzt die Werte der Kacheln und zeichnet die View neu.
+     *
+     * @param values Die Prozentwerte (0 bis 100) pro Kachel oder {@link #EMPTY_CELL}.
+     */
+    public void setValues(@NonNull int[] values) {
+        this.values = values;
+        updateFrozenLayer();
+        invalidate();
+    }
+
+    /**
+     * Legt fest, dass die ersten Kacheln zu abgeschlossenen Tagen gehören und als Bitmap zwischengespeichert werden.
+     *
+     * @param cacheKey    Der Schlüssel des Zeitraums und der Gewohnheit oder null, um nicht zu cachen.
+     * @param frozenCells Die Anzahl der Kacheln in Reihenfolge der Werte, die sich nicht mehr ändern.
+     */
+    public void setCacheKey(@Nullable String cacheKey, int frozenCells) {
+        this.cacheKey = cacheKey;
+        this.frozenCells = frozenCells;
+        clearFrozenLayer();
+        updateFrozenLayer();
+        invalidate();
+    }
+
+    /**
+     * Beschriftet die Zeilen links und die Spalten oberhalb des Rasters. Zu lange Zeilenbeschriftungen werden gekürzt.
+     *
+     * @param rowLabels    Die Beschriftungen der Zeilen von oben nach unten; leer für keine Beschriftung.
+     * @param columnLabels Die Beschriftungen der Spalten von links nach rechts; leer für keine Beschriftung.
+     */
+    public void setAxisLabels(@NonNull String[] rowLabels, @NonNull String[] columnLabels) {
+        this.rowLabels = new String[rowLabels.length];
+        rowLabelWidth = 0;
+        for (int i = 0; i < rowLabels.length; i++) {
+            this.rowLabels[i] = TextUtils.ellipsize(rowLabels[i], labelPaint, maxRowLabelWidth, TextUtils.TruncateAt.END).toString();
+            rowLabelWidth = Math.max(rowLabelWidth, labelPaint.measureText(this.rowLabels[i]) + cellSpacing * 2);
+        }
+        this.columnLabels = columnLabels.clone();
+        columnLabelHeight = columnLabels.length > 0 ? labelPaint.getFontSpacing() + cellSpacing : 0;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Setzt den Listener für Tipps auf Kacheln.
+     *
+     * @param listener Der Listener oder null.
+     */
+    public void setOnCellClickListener(@Nullable OnCellClickListener listener) {
+        this.onCellClickListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getPaddingLeft() + getPaddingRight() + (int) Math.ceil(rowLabelWidth + Math.max(columns * cellSize + (columns - 1) * cellSpacing, 0));
+        int height = getPaddingTop() + getPaddingBottom() + (int) Math.ceil(columnLabelHeight + Math.max(rows * cellSize + (rows - 1) * cellSpacing, 0));
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        int cellCount = Math.min(values.length, rows * columns);
+        int firstCell = 0;
+        float gridLeft = getPaddingLeft() + rowLabelWidth;
+        float gridTop = getPaddingTop() + columnLabelHeight;
+
+        drawLabels(canvas, gridLeft, gridTop);
+        if (frozenLayer != null) {
+            canvas.drawBitmap(frozenLayer, gridLeft, gridTop, null);
+            firstCell = frozenLayerCells;
+        }
+        drawCells(canvas, values, firstCell, cellCount, gridLeft, gridTop,
+                rows, columns, columnMajor, cellPaint, cellRect, completedIcon);
+    }
+
+    /**
+     * Zeichnet die Zeilenbeschriftungen links vom Raster und die Spaltenbeschriftungen zentriert darüber.
+     *
+     * @param canvas   Die Zeichenfläche.
+     * @param gridLeft Die X-Koordinate der ersten Spalte.
+     * @param gridTop  Die Y-Koordinate der ersten Zeile.
+     */
+    private void drawLabels(Canvas canvas, float gridLeft, float gridTop) {
+        Paint.FontMetrics metrics = labelPaint.getFontMetrics();
+        float centerOffset = -(metrics.ascent + metrics.descent) / 2;
+
+        labelPaint.setTextAlign(Paint.Align.LEFT);
+        for (int row = 0; row < Math.min(rowLabels.length, rows); row++) {
+            float centerY = gridTop + row * (cellSize + cellSpacing) + cellSize / 2;
+            canvas.drawText(rowLabels[row], getPaddingLeft(), centerY + centerOffset, labelPaint);
+        }
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        for (int column = 0; column < Math.min(columnLabels.length, columns); column++) {
+            float centerX = gridLeft + column * (cellSize + cellSpacing) + cellSize / 2;
+            canvas.drawText(columnLabels[column], centerX, gridTop - cellSpacing - metrics.descent, labelPaint);
+        }
+    }
+
+    /**
+     * Zeichnet einen Bereich von Kacheln. Alle veränderlichen Objekte werden übergeben, damit die Methode
+     * auch beim Rendern im Hintergrund verwendet werden kann.
+     *
+     * @param canvas      Die Zeichenfläche.
+     * @param cells       Die Werte der Kacheln.
+     * @param from        Der Index der ersten zu zeichnenden Kachel.
+     * @param to          Der Index hinter der letzten zu zeichnenden Kachel.
+     * @param originX     Die X-Koordinate der ersten Spalte.
+     * @param originY     Die Y-Koordinate der ersten Zeile.
+     * @param rows        Die Anzahl der Zeilen.
+     * @param columns     Die Anzahl der Spalten.
+     * @param columnMajor true, wenn die Werte spaltenweise angeordnet sind.
+     * @param paint       Der Paint für die Kacheln.
+     * @param rect        Ein wiederverwendbares Rechteck.
+     * @param icon        Das Icon für vollständig erledigte Tage oder null.
+     */
+    private void drawCells(Canvas canvas, int[] cells, int from, int to, float originX, float originY,
+                           int rows, int columns, boolean columnMajor, Paint paint, RectF rect, @Nullable Drawable icon) {
+        for (int index = from; index < to; index++) {
+            int value = cells[index];
+            if (value == EMPTY_CELL) {
+                continue;
+            }
+            int row = columnMajor ? index % rows : index / columns;
+            int column = columnMajor ? index / rows : index % columns;
+            float left = originX + column * (cellSize + cellSpacing);
+            float top = originY + row * (cellSize + cellSpacing);
+
+            rect.set(left, top, left + cellSize, top + cellSize);
+            paint.setColor(levelColors[levelForValue(value)]);
+            canvas.drawRoundRect(rect, cornerRadius, cornerRadius, paint);
+
+            if (value == 100 && icon != null) {
+                int iconLeft = (int) (rect.centerX() - icon.getIntrinsicWidth() / 2f);
+                int iconTop = (int) (rect.centerY() - icon.getIntrinsicHeight() / 2f);
+                icon.setBounds(iconLeft, iconTop, iconLeft + icon.getIntrinsicWidth(), iconTop + icon.getIntrinsicHeight());
+                icon.draw(canvas);
+            }
+        }
+    }
+
+    /**
+     * Übernimmt die Bitmap der abgeschlossenen Kacheln aus dem Cache oder fordert sie im Hintergrund an.
+     * Bis die Bitmap vorliegt, werden alle Kacheln direkt gezeichnet.
+     */
+    private void updateFrozenLayer() {
+        int count = Math.min(frozenCells, Math.min(values.length, rows * columns));
+        if (cacheKey == null || count <= 0) {
+            clearFrozenLayer();
+            return;
+        }
+
+        int[] snapshot = Arrays.copyOf(values, count);
+        String group = cacheKey + "_" + rows + "x" + columns;
+        String key = group + "_" + layoutKey();
+        if (key.equals(requestedLayerKey) && Arrays.equals(snapshot, requestedLayerCells)) {
+            return;
+        }
+        clearFrozenLayer();
+        requestedLayerKey = key;
+        requestedLayerCells = snapshot;
+
+        HeatmapBitmapCache cache = HeatmapBitmapCache.getInstance(getContext());
+        Bitmap cached = cache.getFromMemory(key, snapshot);
+        if (cached != null) {
+            frozenLayer = cached;
+            frozenLayerCells = count;
+            return;
+        }
+        int gridRows = rows;
+        int gridColumns = columns;
+        boolean gridColumnMajor = columnMajor;
+        cache.load(group, key, snapshot, () -> renderCells(snapshot, gridRows, gridColumns, gridColumnMajor), bitmap -> {
+            // Inzwischen kann ein anderer Zeitraum oder ein anderer Datenstand angezeigt werden
+            if (key.equals(requestedLayerKey) && snapshot == requestedLayerCells) {
+                frozenLayer = bitmap;
+                frozenLayerCells = count;
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Beschreibt Anordnung, Größen und Farben der Kacheln ohne Hash, damit Bitmaps mit anderem Aussehen
+     * nie denselben Schlüssel erhalten.
+     *
+     * @return Der Teil des Schlüssels, der das Layout beschreibt.
+     */
+    private String layoutKey() {
+        StringBuilder builder = new StringBuilder(columnMajor ? "c" : "r")
+                .append(cellSize).append('-').append(cellSpacing).append('-').append(cornerRadius);
+        for (int color : levelColors) {
+            builder.append('-').append(Integer.toHexString(color));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Verwirft die Bitmap der abgeschlossenen Kacheln.
+     */
+    private void clearFrozenLayer() {
+        requestedLayerKey = null;
+        requestedLayerCells = null;
+        frozenLayer = null;
+        frozenLayerCells = 0;
+    }
+
+    /**
+     * Rendert Kacheln in eine neue Bitmap. Wird im Hintergrund ausgeführt und verwendet daher eigene Zeichenobjekte.
+     *
+     * @param cells       Die Werte der Kacheln.
+     * @param rows        Die Anzahl der Zeilen.
+     * @param columns     Die Anzahl der Spalten.
+     * @param columnMajor true, wenn die Werte spaltenweise angeordnet sind.
+     * @return Die Bitmap mit den Kacheln.
+     */
+    private Bitmap renderCells(int[] cells, int rows, int columns, boolean columnMajor) {
+        int width = Math.max(1, (int) Math.ceil(columns * cellSize + (columns - 1) * cellSpacing));
+        int height = Math.max(1, (int) Math.ceil(rows * cellSize + (rows - 1) * cellSpacing));
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        Drawable icon = completedIcon != null && completedIcon.getConstantState() != null
+                ? completedIcon.getConstantState().newDrawable(getResources()).mutate()
+                : completedIcon;
+        drawCells(new Canvas(bitmap), cells, 0, cells.length, 0, 0, rows, columns, columnMajor, paint, new RectF(), icon);
+        return bitmap;
+    }
+
+    /**
+     * Ermittelt die Farbstufe für einen Prozentwert, entsprechend den Stufen 0, 25, 50, 75 und 100 Prozent.
+     *
+     * @param value Der Prozentwert.
+     * @return Die Farbstufe von 0 bis 4.
+     */
+    private static int levelForValue(int value) {
+        if (value >= 100) return 4;
+        if (value >= 75) return 3;
+        if (value >= 50) return 2;
+        if (value > 0) return 1;
+        return 0;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (onCellClickListener == null) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                return true;
+            case MotionEvent.ACTION_UP:
+                int index = cellIndexAt(event.getX(), event.getY());
+                if (index != -1) {
+                    performClick();
+                    onCellClickListener.onCellClick(index, values[index]);
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Ermittelt die Kachel an einer Position innerhalb der View.
+     *
+     * @param x Die X-Koordinate.
+     * @param y Die Y-Koordinate.
+     * @return Der Index der Kachel oder -1, wenn an der Position keine gezeichnete Kachel liegt.
+     */
+    private int cellIndexAt(float x, float y) {
+        float localX = x - getPaddingLeft() - rowLabelWidth;
+        float localY = y - getPaddingTop() - columnLabelHeight;
+        if (localX < 0 || localY < 0) {
+            return -1;
+        }
+        int column = (int) (localX / (cellSize + cellSpacing));
+        int row = (int) (localY / (cellSize + cellSpacing));
+        boolean insideCell = localX - column * (cellSize + cellSpacing) <= cellSize
+                && localY - row * (cellSize + cellSpacing) <= cellSize;
+        if (!insideCell || column >= columns || row >= rows) {
+            return -1;
+        }
+        int index = columnMajor ? column * rows + row : row * columns + column;
+        return index < values.length && values[index] != EMPTY_CELL ? index : -1;
+    }
+}
@@ -2,11 +2,14 @@ package de.hsos.habiton.workers;
 
 import android.app.Application;
 import android.content.Context;
+import android.database.SQLException;
 
 import androidx.annotation.NonNull;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import java.time.LocalDate;
+
 import de.hsos.habiton.repository.HabitRepository;
 import de.hsos.habiton.repository.HabitTrackingRepository;
 
@@ -27,17 +30,26 @@ public class ResetHabitsWorker extends Worker {
 
     /**
      * Führt die Hauptlogik des Workers aus. Wird automatisch von WorkManager aufgerufen, wenn der Worker ausgeführt werden soll.
-     * Setzt Streaks zurück, falls sie gestern nicht erfüllt wurden, und initialisiert das Tracking für alle Habits für den heutigen Tag.
+     * Trägt Tage nach, an denen der Worker nicht gelaufen ist, setzt Streaks zurück, falls sie seitdem nicht erfüllt wurden,
+     * und initialisiert das Tracking für alle Habits für den heutigen Tag.
+     * Beides geschieht synchron in einer Transaktion, sodass der Erfolg erst nach dem Commit gemeldet wird.
+     * Anschließend werden Gewohnheiten mit unvollständigem Streak-Zustand einmalig aus der Historie repariert.
      *
-     * @return Das Ergebnis der Arbeit, entweder Result.success(), Result.failure() oder Result.retry().
+     * @return Das Ergebnis der Arbeit, entweder Result.success() oder Result.retry(), wenn die Datenbank nicht geschrieben werden konnte.
      */
     @NonNull
     @Override
     public Result doWork() {
-        HabitTrackingRepository habitTrackingRepository = new HabitTrackingRepository((Application) getApplicationContext());
-        HabitRepository habitRepository = new HabitRepository((Application) getApplicationContext());
-        habitTrackingRepository.resetStreakIfNotCompletedYesterday();
-        habitRepository.createTrackingForAllHabits();
-        return Result.success();
+        Application application = (Application) getApplicationContext();
+        HabitTrackingRepository habitTrackingRepository = HabitTrackingRepository.getInstance(application);
+        HabitRepository habitRepository = HabitRepository.getInstance(application);
+        LocalDate today = LocalDate.now();
+        try {
+            habitTrackingRepository.performDailyRollover(today);
+            habitRepository.repairIncompleteStreaks(today);
+            return Result.success();
+        } catch (SQLException e) {
+            return Result.retry();
+        }
     }
 }
@@ -0,0 +1,209 @@
+package de.hsos.habiton.database.paging;
+
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingSource;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import de.hsos.habiton.database.daos.HabitTrackingDao;
+import de.hsos.habiton.database.models.HabitTracking;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für die Keyset-Grenzen der {@link HabitHistoryPagingSource}. Das DAO wird durch eine Liste im Speicher
+ * ersetzt, die die vier Keyset-Abfragen nachbildet.
+ * @author Finn Garrels
+ */
+public class HabitHistoryPagingSourceTest {
+
+    private static final int HABIT_ID = 1;
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 150;
+    private static final LocalDate NEWEST = START.plusDays(DAYS - 1);
+
+    /**
+     * Legt für zwei Gewohnheiten ab {@link #START} Trackings im angegebenen Abstand an.
+     */
+    private static List<HabitTracking> trackings(int days, int step) {
+        List<HabitTracking> trackings = new ArrayList<>();
+        for (int habitId = HABIT_ID; habitId <= HABIT_ID + 1; habitId++) {
+            for (int day = 0; day < days; day += step) {
+                HabitTracking tracking = new HabitTracking(habitId, START.plusDays(day), day % 3 == 0);
+                tracking.setTrackID(trackings.size() + 1);
+                trackings.add(tracking);
+            }
+        }
+        return trackings;
+    }
+
+    private static List<HabitTracking> select(List<HabitTracking> trackings, int habitId, Predicate<LocalDate> date,
+                                              Comparator<HabitTracking> order, int limit) {
+        return trackings.stream()
+                .filter(t -> t.getHabitID() == habitId && date.test(t.getDate()))
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static int count(List<HabitTracking> trackings, int habitId, Predicate<LocalDate> date) {
+        return (int) trackings.stream().filter(t -> t.getHabitID() == habitId && date.test(t.getDate())).count();
+    }
+
+    /**
+     * Erstellt ein DAO, das nur die Keyset-Abfragen der Historie aus einer Liste beantwortet.
+     */
+    private static HabitTrackingDao fakeDao(List<HabitTracking> trackings) {
+        Comparator<HabitTracking> ascending = Comparator.comparing(HabitTracking::getDate);
+        return (HabitTrackingDao) Proxy.newProxyInstance(HabitTrackingDao.class.getClassLoader(),
+                new Class<?>[]{HabitTrackingDao.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTrackingsUpTo":
+                            return select(trackings, (int) args[0], d -> !d.isAfter((LocalDate) args[1]),
+                                    ascending.reversed(), (int) args[2]);
+                        case "getTrackingsFrom":
+                            return select(trackings, (int) args[0], d -> !d.isBefore((LocalDate) args[1]),
+                                    ascending, (int) args[2]);
+                        case "countTrackingsAfter":
+                            return count(trackings, (int) args[0], d -> d.isAfter((LocalDate) args[1]));
+                        case "countTrackingsBefore":
+                            return count(trackings, (int) args[0], d -> d.isBefore((LocalDate) args[1]));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static HabitHistoryPagingSource source(List<HabitTracking> trackings) {
+        return new HabitHistoryPagingSource(fakeDao(trackings), HABIT_ID, MoreExecutors.newDirectExecutorService());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PagingSource.LoadResult.Page<LocalDate, HabitTracking> load(
+            HabitHistoryPagingSource source, PagingSource.LoadParams<LocalDate> params) throws Exception {
+        return (PagingSource.LoadResult.Page<LocalDate, HabitTracking>) source.loadFuture(params).get();
+    }
+
+    /**
+     * Prüft, dass eine Seite nur Trackings der Gewohnheit enthält, lückenlos absteigend von {@code newest} bis
+     * {@code oldest}.
+     */
+    private static void assertDays(List<HabitTracking> page, LocalDate newest, LocalDate oldest) {
+        List<LocalDate> expected = new ArrayList<>();
+        for (LocalDate day = newest; !day.isBefore(oldest); day = day.minusDays(1)) {
+            expected.add(day);
+        }
+        assertEquals(expected, page.stream().map(HabitTracking::getDate).collect(Collectors.toList()));
+        for (HabitTracking tracking : page) {
+            assertEquals(HABIT_ID, tracking.getHabitID());
+        }
+    }
+
+    @Test
+    public void refresh_withoutKeyStartsAtNewestDay() throws Exception {
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> page =
+                load(source(trackings(DAYS, 1)), new PagingSource.LoadParams.Refresh<>(null, 60, true));
+
+        assertDays(page.getData(), NEWEST, NEWEST.minusDays(59));
+        assertNull(page.getPrevKey());
+        assertEquals(NEWEST.minusDays(60), page.getNextKey());
+        assertEquals(0, page.getItemsBefore());
+        assertEquals(DAYS - 60, page.getItemsAfter());
+    }
+
+    @Test
+    public void refresh_atKeyCountsPlaceholdersOnBothSides() throws Exception {
+        LocalDate key = START.plusDays(99);
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> page =
+                load(source(trackings(DAYS, 1)), new PagingSource.LoadParams.Refresh<>(key, 60, true));
+
+        assertDays(page.getData(), key, START.plusDays(40));
+        assertEquals(key.plusDays(1), page.getPrevKey());
+        assertEquals(START.plusDays(39), page.getNextKey());
+        assertEquals(50, page.getItemsBefore());
+        assertEquals(40, page.getItemsAfter());
+    }
+
+    @Test
+    public void append_walksBackUntilOldestDay() throws Exception {
+        HabitHistoryPagingSource source = source(trackings(DAYS, 1));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> first =
+                load(source, new PagingSource.LoadParams.Refresh<>(null, 60, true));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> second =
+                load(source, new PagingSource.LoadParams.Append<>(first.getNextKey(), 60, true));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> last =
+                load(source, new PagingSource.LoadParams.Append<>(second.getNextKey(), 60, true));
+
+        assertDays(second.getData(), NEWEST.minusDays(60), NEWEST.minusDays(119));
+        assertEquals(NEWEST.minusDays(59), second.getPrevKey());
+        assertEquals(NEWEST.minusDays(120), second.getNextKey());
+        assertDays(last.getData(), NEWEST.minusDays(120), START);
+        assertNull(last.getNextKey());
+    }
+
+    @Test
+    public void prepend_returnsNewerDaysNewestFirst() throws Exception {
+        HabitHistoryPagingSource source = source(trackings(DAYS, 1));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> full =
+                load(source, new PagingSource.LoadParams.Prepend<>(START.plusDays(40), 60, true));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> last =
+                load(source, new PagingSource.LoadParams.Prepend<>(START.plusDays(100), 60, true));
+
+        assertDays(full.getData(), START.plusDays(99), START.plusDays(40));
+        assertEquals(START.plusDays(100), full.getPrevKey());
+        assertEquals(START.plusDays(39), full.getNextKey());
+        assertDays(last.getData(), NEWEST, START.plusDays(100));
+        assertNull(last.getPrevKey());
+        assertEquals(START.plusDays(99), last.getNextKey());
+    }
+
+    @Test
+    public void append_skipsDaysWithoutTracking() throws Exception {
+        HabitHistoryPagingSource source = source(trackings(DAYS, 2));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> first =
+                load(source, new PagingSource.LoadParams.Refresh<>(null, 10, true));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> second =
+                load(source, new PagingSource.LoadParams.Append<>(first.getNextKey(), 10, true));
+
+        LocalDate oldestOfFirst = first.getData().get(first.getData().size() - 1).getDate();
+        assertEquals(oldestOfFirst.minusDays(2), second.getData().get(0).getDate());
+        assertEquals(10, second.getData().size());
+        assertEquals(count(trackings(DAYS, 2), HABIT_ID, d -> true) - 10, first.getItemsAfter());
+    }
+
+    @Test
+    public void refresh_emptyHistory() throws Exception {
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> page =
+                load(source(Collections.emptyList()), new PagingSource.LoadParams.Refresh<>(null, 60, true));
+
+        assertTrue(page.getData().isEmpty());
+        assertNull(page.getPrevKey());
+        assertNull(page.getNextKey());
+        assertEquals(0, page.getItemsBefore());
+        assertEquals(0, page.getItemsAfter());
+    }
+
+    @Test
+    public void getRefreshKey_returnsDateOfAnchorItem() throws Exception {
+        HabitHistoryPagingSource source = source(trackings(DAYS, 1));
+        PagingSource.LoadResult.Page<LocalDate, HabitTracking> page =
+                load(source, new PagingSource.LoadParams.Refresh<>(null, 60, true));
+        PagingConfig config = new PagingConfig(60);
+
+        assertEquals(NEWEST.minusDays(10),
+                source.getRefreshKey(new PagingState<>(Collections.singletonList(page), 10, config, 0)));
+        assertNull(source.getRefreshKey(new PagingState<>(Collections.singletonList(page), null, config, 0)));
+    }
+}
@@ -0,0 +1,202 @@
+package de.hsos.habiton.helpers;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import de.hsos.habiton.helpers.CompletionIndex.HabitHistory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für die Bitset-Historie einer Gewohnheit ({@link CompletionIndex.HabitHistory}), insbesondere an den Grenzen
+ * der 64-Tage-Wörter und für den Fenwick-Baum über den Wörtern.
+ * @author Finn Garrels
+ */
+public class HabitHistoryTest {
+
+    private static HabitHistory historyWith(long fromDay, long toDay) {
+        HabitHistory history = new HabitHistory(fromDay);
+        for (long day = fromDay; day <= toDay; day++) {
+            history.set(day, true);
+        }
+        return history;
+    }
+
+    @Test
+    public void count_spansWordBoundary() {
+        HabitHistory history = historyWith(60, 70);
+
+        assertEquals(11, history.count(0, 100));
+        assertEquals(2, history.count(63, 64));
+        assertEquals(1, history.count(64, 64));
+        assertEquals(4, history.count(60, 63));
+        assertEquals(0, history.count(71, 500));
+    }
+
+    @Test
+    public void set_isIdempotentAndReversible() {
+        HabitHistory history = new HabitHistory(0);
+
+        history.set(65, true);
+        history.set(65, true);
+        assertEquals(1, history.count(0, 127));
+
+        history.set(65, false);
+        history.set(65, false);
+        assertEquals(0, history.count(0, 127));
+    }
+
+    @Test
+    public void set_beforeFirstDayKeepsExistingDays() {
+        HabitHistory history = new HabitHistory(1000);
+        history.set(1000, true);
+        history.set(900, true);
+
+        assertEquals(2, history.count(900, 1000));
+        assertEquals(1, history.count(901, 1000));
+        assertEquals(1, history.runLengthEndingAt(1000));
+        assertEquals(1, history.runLengthEndingAt(900));
+    }
+
+    @Test
+    public void set_farAheadGrowsCapacity() {
+        HabitHistory history = historyWith(0, 10);
+        history.set(64 * 10 + 5, true);
+
+        assertEquals(12, history.count(0, 64 * 11));
+        assertEquals(1, history.count(64 * 10, 64 * 10 + 63));
+    }
+
+    @Test
+    public void count_handlesNegativeEpochDays() {
+        HabitHistory history = historyWith(-70, -60);
+
+        assertEquals(11, history.count(-100, 0));
+        assertEquals(7, history.count(-66, -60));
+    }
+
+    @Test
+    public void runLengthEndingAt_crossesWords() {
+        HabitHistory history = historyWith(50, 130);
+
+        assertEquals(81, history.runLengthEndingAt(130));
+        assertEquals(14, history.runLengthEndingAt(63));
+        assertEquals(15, history.runLengthEndingAt(64));
+        assertEquals(0, history.runLengthEndingAt(131));
+        assertEquals(0, history.runLengthEndingAt(49));
+    }
+
+    @Test
+    public void runLengthEndingAt_coversWholeWords() {
+        HabitHistory history = historyWith(0, 191);
+
+        assertEquals(192, history.runLengthEndingAt(191));
+        assertEquals(64, history.runLengthEndingAt(63));
+        assertEquals(128, history.runLengthEndingAt(127));
+    }
+
+    @Test
+    public void runLengthEndingAt_outsideHistory() {
+        HabitHistory history = historyWith(0, 5);
+
+        assertEquals(0, history.runLengthEndingAt(-1));
+        assertEquals(0, history.runLengthEndingAt(10_000));
+    }
+
+    @Test
+    public void longestRun_findsLongestAcrossWords() {
+        HabitHistory history = historyWith(10, 20);
+        for (long day = 60; day <= 140; day++) {
+            history.set(day, true);
+        }
+        for (long day = 200; day <= 210; day++) {
+            history.set(day, true);
+        }
+
+        CompletionIndex.Run run = history.longestRun();
+        assertEquals(81, run.getLength());
+        assertEquals(LocalDate.ofEpochDay(60), run.getStart());
+    }
+
+    @Test
+    public void longestRun_prefersEarliestOfEqualRuns() {
+        HabitHistory history = historyWith(5, 9);
+        for (long day = 100; day <= 104; day++) {
+            history.set(day, true);
+        }
+
+        CompletionIndex.Run run = history.longestRun();
+        assertEquals(5, run.getLength());
+        assertEquals(LocalDate.ofEpochDay(5), run.getStart());
+    }
+
+    @Test
+    public void longestRun_emptyHistory() {
+        CompletionIndex.Run run = new HabitHistory(0).longestRun();
+
+        assertEquals(0, run.getLength());
+        assertNull(run.getStart());
+    }
+
+    @Test
+    public void count_matchesBruteForceAfterRandomToggles() {
+        Random random = new Random(42);
+        long firstDay = -300;
+        boolean[] expected = new boolean[1000];
+        HabitHistory history = new HabitHistory(firstDay + 500);
+
+        for (int i = 0; i < 5000; i++) {
+            int offset = random.nextInt(expected.length);
+            boolean status = random.nextBoolean();
+            expected[offset] = status;
+            history.set(firstDay + offset, status);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(expected.length);
+            int to = from + random.nextInt(expected.length - from);
+            int count = 0;
+            for (int day = from; day <= to; day++) {
+                if (expected[day]) {
+                    count++;
+                }
+            }
+            assertEquals("count(" + from + ", " + to + ")", count, history.count(firstDay + from, firstDay + to));
+        }
+    }
+
+    @Test
+    public void wordsBetween_alignsFirstDayToBitZero() {
+        Random random = new Random(7);
+        boolean[] expected = new boolean[400];
+        HabitHistory history = new HabitHistory(0);
+        for (int day = 0; day < expected.length; day++) {
+            expected[day] = random.nextBoolean();
+            history.set(day, expected[day]);
+        }
+
+        long from = 37;
+        long to = 250;
+        long[] window = history.wordsBetween(from, to);
+        assertEquals(HabitHistory.emptyWords(from, to).length, window.length);
+        for (long day = from - 5; day <= to + 70; day++) {
+            long index = day - from;
+            boolean inWindow = index >= 0 && day <= to;
+            boolean bit = index >= 0 && index < window.length * 64L
+                    && (window[(int) (index >>> 6)] & (1L << index)) != 0;
+            assertEquals("Tag " + day, inWindow && expected[(int) day], bit);
+        }
+    }
+
+    @Test
+    public void wordsBetween_outsideHistoryIsEmpty() {
+        HabitHistory history = historyWith(0, 10);
+
+        for (long word : history.wordsBetween(500, 700)) {
+            assertEquals(0, word);
+        }
+        assertEquals(0, HabitHistory.emptyWords(10, 5).length);
+    }
+}
@@ -0,0 +1,184 @@
+package de.hsos.habiton.helpers;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests für das Teilen, Speichern, Invalidieren und Abbrechen von Berechnungen im {@link SingleFlightCache}.
+ * Die Berechnungen laufen auf einem einzelnen Hintergrund-Thread und werden über Latches gesteuert.
+ * @author Finn Garrels
+ */
+public class SingleFlightCacheTest {
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wartet, bis alle bisher eingereihten Aufgaben des Executors abgearbeitet sind.
+     */
+    private void drain() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private SingleFlightCache.Computation<Integer> counting() {
+        return signal -> computations.incrementAndGet();
+    }
+
+    private SingleFlightCache.Computation<Integer> blocking(CountDownLatch started, CountDownLatch release) {
+        return signal -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return computations.incrementAndGet();
+        };
+    }
+
+    @Test
+    public void get_sharesRunningComputation() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        LiveData<Integer> first = cache.get("key", executor, blocking(started, release));
+        LiveData<Integer> second = cache.get("key", executor, blocking(started, release));
+        release.countDown();
+        drain();
+
+        assertSame(first, second);
+        assertEquals(1, computations.get());
+        assertEquals(Integer.valueOf(1), first.getValue());
+    }
+
+    @Test
+    public void get_returnsMemoizedResultUntilInvalidate() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        cache.get("key", executor, counting());
+        drain();
+
+        LiveData<Integer> memoized = cache.get("key", executor, counting());
+        assertEquals(Integer.valueOf(1), memoized.getValue());
+        assertEquals(1, computations.get());
+
+        cache.invalidate();
+        LiveData<Integer> recomputed = cache.get("key", executor, counting());
+        drain();
+        assertEquals(Integer.valueOf(2), recomputed.getValue());
+    }
+
+    @Test
+    public void invalidate_deliversRunningResultWithoutMemoizingIt() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        LiveData<Integer> stale = cache.get("key", executor, blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.invalidate();
+        release.countDown();
+        drain();
+
+        assertEquals(Integer.valueOf(1), stale.getValue());
+        LiveData<Integer> fresh = cache.get("key", executor, counting());
+        drain();
+        assertEquals(Integer.valueOf(2), fresh.getValue());
+    }
+
+    @Test
+    public void cancelPending_discardsRunningResult() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        LiveData<Integer> cancelled = cache.get("key", executor, blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.cancelPending();
+        release.countDown();
+        drain();
+
+        assertNull(cancelled.getValue());
+        LiveData<Integer> retried = cache.get("key", executor, counting());
+        drain();
+        assertNotSame(cancelled, retried);
+        assertEquals(Integer.valueOf(2), retried.getValue());
+    }
+
+    @Test
+    public void cancelPending_skipsQueuedComputation() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        LiveData<Integer> queued = cache.get("key", executor, counting());
+        cache.cancelPending();
+        release.countDown();
+        drain();
+
+        assertEquals(0, computations.get());
+        assertNull(queued.getValue());
+    }
+
+    @Test
+    public void get_retriesAfterFailedComputation() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache();
+        LiveData<Integer> failed = cache.get("key", executor, signal -> {
+            throw new IllegalStateException("database unavailable");
+        });
+        drain();
+        assertNull(failed.getValue());
+
+        LiveData<Integer> retried = cache.get("key", executor, counting());
+        drain();
+        assertNotSame(failed, retried);
+        assertEquals(Integer.valueOf(1), retried.getValue());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsedResult() throws Exception {
+        SingleFlightCache cache = new SingleFlightCache(2);
+        cache.get("a", executor, counting());
+        cache.get("b", executor, counting());
+        drain();
+        cache.get("a", executor, counting());
+        cache.get("c", executor, counting());
+        drain();
+        assertEquals(3, computations.get());
+
+        // "b" wurde am längsten nicht genutzt und ist verdrängt, "a" ist weiterhin gespeichert
+        cache.get("a", executor, counting());
+        cache.get("b", executor, counting());
+        drain();
+        assertEquals(4, computations.get());
+    }
+}